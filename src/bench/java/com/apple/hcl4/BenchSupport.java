@@ -0,0 +1,107 @@
+package com.apple.hcl4;
+
+import com.apple.hcl4.domain.Authority;
+import com.apple.hcl4.domain.Continent;
+import com.apple.hcl4.domain.Country;
+import com.apple.hcl4.domain.User;
+import java.lang.reflect.Field;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Wires the beans and builds the fixtures of the benchmarks outside of the
+ * container.
+ */
+public final class BenchSupport {
+
+    private BenchSupport() {
+    }
+
+    /**
+     * Sets the injected field of the bean, as the container would do.
+     */
+    public static <T> T inject(T bean, String fieldName, Object value) {
+        Class<?> type = bean.getClass();
+        while (type != null) {
+            try {
+                Field field = type.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                field.set(bean, value);
+                return bean;
+            } catch (NoSuchFieldException ex) {
+                type = type.getSuperclass();
+            } catch (IllegalAccessException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+        throw new IllegalArgumentException("No field " + fieldName + " in " + bean.getClass());
+    }
+
+    /**
+     * Reads the private field of the bean.
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> V get(Object bean, String fieldName) {
+        Class<?> type = bean.getClass();
+        while (type != null) {
+            try {
+                Field field = type.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                return (V) field.get(bean);
+            } catch (NoSuchFieldException ex) {
+                type = type.getSuperclass();
+            } catch (IllegalAccessException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+        throw new IllegalArgumentException("No field " + fieldName + " in " + bean.getClass());
+    }
+
+    /**
+     * Sets the injected logger of the bean.
+     */
+    public static <T> T injectLogger(T bean) {
+        return inject(bean, "log", LoggerFactory.getLogger(bean.getClass()));
+    }
+
+    public static User newUser(long id) {
+        User user = new User();
+        user.setId(id);
+        user.setLogin("user" + id);
+        user.setFirstName("First" + id);
+        user.setLastName("Last" + id);
+        user.setEmail("user" + id + "@example.com");
+        user.setActivated(true);
+        user.setActivationKey("12345678901234567890");
+        user.setLangKey("en");
+        user.setCreatedBy("system");
+        user.setCreatedDate(Instant.now());
+        user.setLastModifiedBy("system");
+        user.setLastModifiedDate(Instant.now());
+        Set<Authority> authorities = new HashSet<>();
+        authorities.add(new Authority("ROLE_USER"));
+        authorities.add(new Authority("ROLE_ADMIN"));
+        user.setAuthorities(authorities);
+        return user;
+    }
+
+    public static List<Country> newCountries(int size) {
+        Continent continent = new Continent();
+        continent.setId(1L);
+        continent.setContinentName("Europe");
+        List<Country> countries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Country country = new Country();
+            country.setId((long) i);
+            country.setCountryName("Country" + i);
+            country.setCountryFlag("C" + i);
+            country.setCountryContinent(continent);
+            countries.add(country);
+        }
+        return countries;
+    }
+}
@@ -0,0 +1,63 @@
+package com.apple.hcl4.controller.util;
+
+import com.apple.hcl4.BenchSupport;
+import com.apple.hcl4.domain.Country;
+import com.apple.hcl4.service.dto.UserDTO;
+import java.util.ArrayList;
+import java.util.List;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * JSON-B serialization of the list endpoint pages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+public class JsonbBenchmark {
+
+    @Param({"20", "100"})
+    private int size;
+
+    private Jsonb jsonb;
+
+    private List<Country> countries;
+
+    private List<UserDTO> users;
+
+    @Setup
+    public void setup() {
+        jsonb = JsonbBuilder.create();
+        countries = BenchSupport.newCountries(size);
+        users = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            users.add(new UserDTO(BenchSupport.newUser(i)));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        jsonb.close();
+    }
+
+    @Benchmark
+    public String serializeCountries() {
+        return jsonb.toJson(countries);
+    }
+
+    @Benchmark
+    public String serializeUsers() {
+        return jsonb.toJson(users);
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.apple.hcl4.controller.util;
+
+import java.net.URISyntaxException;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import javax.ws.rs.core.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+public class PaginationUtilBenchmark {
+
+    private static final String BASE_URL = "/resources/api/users";
+
+    private final Page page = new Page(3, 20, 1000);
+
+    @Benchmark
+    public Response generatePaginationHttpHeaders() throws URISyntaxException {
+        return PaginationUtil.generatePaginationHttpHeaders(Response.ok(), page, BASE_URL).build();
+    }
+
+    @Benchmark
+    public Response generatePaginationHttpHeadersWithoutTotal() throws URISyntaxException {
+        return PaginationUtil.generatePaginationHttpHeaders(Response.ok(), 3, 20, true, BASE_URL).build();
+    }
+
+}
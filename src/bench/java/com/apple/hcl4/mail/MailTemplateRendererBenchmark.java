@@ -0,0 +1,88 @@
+package com.apple.hcl4.mail;
+
+import com.apple.hcl4.BenchSupport;
+import static com.apple.hcl4.BenchSupport.inject;
+import com.apple.hcl4.config.MailConfig;
+import com.apple.hcl4.domain.User;
+import com.apple.hcl4.producer.TemplateEngineProducer;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.function.Function;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.resource.loader.ClasspathResourceLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Renders per second of the mail subject and content, {@code uncached}
+ * resolves the template, the bundle and the buffer on each render as the
+ * mail notifier did before the {@link MailTemplateRenderer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+public class MailTemplateRendererBenchmark {
+
+    private static final String BASE_URL = "http://127.0.0.1:8080/hcl4";
+
+    @Param({"activationEmail", "creationEmail", "passwordResetEmail"})
+    private String contentTemplate;
+
+    private String subjectTemplate;
+
+    private MailTemplateRenderer renderer;
+
+    private VelocityEngine uncachedEngine;
+
+    private User user;
+
+    @Setup
+    public void setup() {
+        MailConfig mailConfig = new MailConfig();
+        inject(mailConfig, "baseUrl", BASE_URL);
+
+        renderer = new MailTemplateRenderer();
+        inject(renderer, "engine", new TemplateEngineProducer().getTemplateEngine());
+        inject(renderer, "mailConfig", mailConfig);
+
+        uncachedEngine = new VelocityEngine();
+        uncachedEngine.setProperty(RuntimeConstants.RESOURCE_LOADER, "classpath");
+        uncachedEngine.setProperty("classpath.resource.loader.class", ClasspathResourceLoader.class.getName());
+        uncachedEngine.init();
+
+        subjectTemplate = "activationEmail".equals(contentTemplate) ? "email.activation.title"
+                : "creationEmail".equals(contentTemplate) ? "email.creation.title" : "email.reset.title";
+        user = BenchSupport.newUser(1);
+    }
+
+    @Benchmark
+    public String cached() {
+        return renderer.renderSubject(user, subjectTemplate) + renderer.renderContent(user, contentTemplate);
+    }
+
+    @Benchmark
+    public String uncached() {
+        ResourceBundle bundle = ResourceBundle.getBundle("i18n.messages", Locale.forLanguageTag(user.getLangKey()));
+        Function<String, String> props = bundle::getString;
+        Template t = uncachedEngine.getTemplate(String.format("mails/%s.html", contentTemplate));
+        VelocityContext context = new VelocityContext();
+        context.put("user", user);
+        context.put("baseUrl", BASE_URL);
+        context.put("props", props);
+        StringWriter writer = new StringWriter();
+        t.merge(context, writer);
+        return props.apply(subjectTemplate) + writer;
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.apple.hcl4.security;
+
+import com.apple.hcl4.config.SecurityConfig;
+import static com.apple.hcl4.BenchSupport.inject;
+import static com.apple.hcl4.BenchSupport.injectLogger;
+import java.io.IOException;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Sign and verify cost of each token algorithm, with a RSA 2048, P-256 and
+ * Ed25519 key generated for the run. EdDSA needs JDK 15 or later, its setup
+ * fails on older JDKs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(MICROSECONDS)
+public class JwtAlgorithmBenchmark {
+
+    @Param({"RS256", "ES256", "EdDSA"})
+    private String algorithm;
+
+    private Path privateKeyFile;
+
+    private Path publicKeyFile;
+
+    private TokenProvider tokenProvider;
+
+    private TokenVerifier tokenVerifier;
+
+    private Set<String> groups;
+
+    private String token;
+
+    @Setup
+    public void setup() throws IOException, GeneralSecurityException {
+        JwtAlgorithm jwtAlgorithm = JwtAlgorithm.valueOf(algorithm);
+        jwtAlgorithm.checkSupported();
+        KeyPair keyPair = generateKeyPair(jwtAlgorithm);
+        privateKeyFile = writePem(keyPair.getPrivate(), "PRIVATE KEY");
+        publicKeyFile = writePem(keyPair.getPublic(), "PUBLIC KEY");
+
+        SecurityConfig securityConfig = new SecurityConfig();
+        inject(securityConfig, "issuer", "com.mycompany");
+        inject(securityConfig, "tokenValidityInSeconds", 86400L);
+        inject(securityConfig, "tokenValidityInSecondsForRememberMe", 1314000L);
+        inject(securityConfig, "signAlgorithm", algorithm);
+        inject(securityConfig, "privateKeyLocation", privateKeyFile.toString());
+        inject(securityConfig, "publicKeyLocations", Collections.singletonList(publicKeyFile.toString()));
+
+        tokenProvider = injectLogger(new TokenProvider());
+        inject(tokenProvider, "securityConfig", securityConfig);
+        tokenProvider.init();
+        // no verified token cache, every verification checks the signature
+        VerifiedTokenCache verifiedTokenCache = inject(new VerifiedTokenCache(), "securityConfig", securityConfig);
+        verifiedTokenCache.init();
+        tokenVerifier = injectLogger(new TokenVerifier());
+        inject(tokenVerifier, "securityConfig", securityConfig);
+        inject(tokenVerifier, "verifiedTokenCache", verifiedTokenCache);
+        tokenVerifier.init();
+
+        groups = new HashSet<>();
+        groups.add(AuthoritiesConstants.USER);
+        groups.add(AuthoritiesConstants.ADMIN);
+        token = tokenProvider.createToken("admin", groups, false);
+        if (!tokenVerifier.verify(token).isPresent()) {
+            throw new IllegalStateException(algorithm + " token not verified");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(privateKeyFile);
+        Files.deleteIfExists(publicKeyFile);
+    }
+
+    @Benchmark
+    public String sign() {
+        return tokenProvider.createToken("admin", groups, false);
+    }
+
+    @Benchmark
+    public Optional<VerifiedToken> verify() {
+        return tokenVerifier.verify(token);
+    }
+
+    private static KeyPair generateKeyPair(JwtAlgorithm algorithm) throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance(algorithm.getKeyAlgorithm());
+        switch (algorithm) {
+            case RS256:
+                generator.initialize(2048);
+                break;
+            case ES256:
+                generator.initialize(new ECGenParameterSpec("secp256r1"));
+                break;
+            default:
+                break;
+        }
+        return generator.generateKeyPair();
+    }
+
+    private static Path writePem(Key key, String type) throws IOException {
+        Path file = Files.createTempFile("jwt", ".pem");
+        String pem = "-----BEGIN " + type + "-----\n"
+                + Base64.getMimeEncoder(64, new byte[]{'\n'}).encodeToString(key.getEncoded())
+                + "\n-----END " + type + "-----\n";
+        Files.write(file, pem.getBytes(US_ASCII));
+        return file;
+    }
+
+}
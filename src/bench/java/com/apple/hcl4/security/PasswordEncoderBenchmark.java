@@ -0,0 +1,44 @@
+package com.apple.hcl4.security;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of a password hash at the given iteration counts, to choose
+ * {@code service.password.iterations} for the target hardware.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MILLISECONDS)
+public class PasswordEncoderBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({"60000", "120000", "240000"})
+    private int iterations;
+
+    private String encoded;
+
+    @Setup
+    public void setup() {
+        encoded = PasswordEncoder.hash(PASSWORD, iterations);
+    }
+
+    @Benchmark
+    public String hash() {
+        return PasswordEncoder.hash(PASSWORD, iterations);
+    }
+
+    @Benchmark
+    public boolean check() {
+        return PasswordEncoder.check(PASSWORD, encoded);
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.apple.hcl4.security;
+
+import com.apple.hcl4.config.SecurityConfig;
+import static com.apple.hcl4.BenchSupport.get;
+import static com.apple.hcl4.BenchSupport.inject;
+import static com.apple.hcl4.BenchSupport.injectLogger;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import static io.jsonwebtoken.Header.JWT_TYPE;
+import static io.jsonwebtoken.Header.TYPE;
+import java.security.PrivateKey;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import org.eclipse.microprofile.jwt.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+public class TokenProviderBenchmark {
+
+    private TokenProvider tokenProvider;
+
+    private Set<String> groups;
+
+    private PrivateKey privateKey;
+
+    @Setup
+    public void setup() {
+        SecurityConfig securityConfig = new SecurityConfig();
+        inject(securityConfig, "issuer", "com.mycompany");
+        inject(securityConfig, "signAlgorithm", "RS256");
+        inject(securityConfig, "privateKeyLocation", "privateKey.pem");
+        inject(securityConfig, "tokenValidityInSeconds", 86400L);
+        inject(securityConfig, "tokenValidityInSecondsForRememberMe", 1314000L);
+
+        tokenProvider = injectLogger(new TokenProvider());
+        inject(tokenProvider, "securityConfig", securityConfig);
+        tokenProvider.init();
+        privateKey = get(tokenProvider, "privateKey");
+
+        groups = new HashSet<>();
+        groups.add(AuthoritiesConstants.USER);
+        groups.add(AuthoritiesConstants.ADMIN);
+    }
+
+    @Benchmark
+    public String createToken() {
+        return tokenProvider.createToken("admin", groups, false);
+    }
+
+    /**
+     * Baseline: the generic jjwt builder, which serializes the header and the
+     * claims by reflection and creates a new {@code Signature} per token.
+     */
+    @Benchmark
+    public String createTokenWithJjwt() {
+        long issuedTime = System.currentTimeMillis();
+        return Jwts.builder()
+                .setHeaderParam(TYPE, JWT_TYPE)
+                .setId(UUID.randomUUID().toString())
+                .setSubject("admin")
+                .claim(Claims.groups.name(), groups)
+                .setIssuer("com.mycompany")
+                .setIssuedAt(new Date(issuedTime))
+                .setExpiration(new Date(issuedTime + 86400000L))
+                .signWith(SignatureAlgorithm.RS256, privateKey)
+                .compact();
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.apple.hcl4.service.dto;
+
+import com.apple.hcl4.BenchSupport;
+import com.apple.hcl4.domain.User;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+public class UserDTOBenchmark {
+
+    private User user;
+
+    @Setup
+    public void setup() {
+        user = BenchSupport.newUser(1);
+    }
+
+    @Benchmark
+    public UserDTO newUserDTO() {
+        return new UserDTO(user);
+    }
+
+}
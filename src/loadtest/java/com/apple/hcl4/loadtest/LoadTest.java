@@ -0,0 +1,228 @@
+package com.apple.hcl4.loadtest;
+
+import com.apple.hcl4.loadtest.LoadTestClient.HttpResult;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * End-to-end load test of the deployed application.
+ * <p>
+ * Seeds the users and the countries through the batch endpoints, then runs
+ * the scripted traffic (login, list pages, get by id, create, update) from a
+ * fixed number of closed-loop client threads and reports the throughput and
+ * the latency percentiles of each operation. Run with {@code mvn -P loadtest
+ * verify}, which starts the application on Payara Micro with its embedded
+ * default datasource; the settings are read from the system properties
+ * below.
+ * </p>
+ * <ul>
+ * <li>{@code loadtest.baseUrl} the API URL, default
+ * {@code http://localhost:8080/resources/api}</li>
+ * <li>{@code loadtest.users} the number of seeded users, default 1000</li>
+ * <li>{@code loadtest.countries} the number of seeded countries, at most 676,
+ * default 200</li>
+ * <li>{@code loadtest.threads} the number of client threads, default 16</li>
+ * <li>{@code loadtest.warmup} the warmup in seconds, default 15</li>
+ * <li>{@code loadtest.duration} the measured duration in seconds, default
+ * 60</li>
+ * <li>{@code loadtest.report} the text report, default
+ * {@code target/loadtest-report.txt}, the JSON report is written next to
+ * it</li>
+ * </ul>
+ */
+public class LoadTest {
+
+    private static final String ADMIN_LOGIN = "admin";
+    private static final String ADMIN_PASSWORD = "admin";
+    private static final String USER_LOGIN = "user";
+    private static final String USER_PASSWORD = "user";
+    private static final String SEED_PREFIX = "loaduser";
+    private static final int PAGE_SIZE = 20;
+    private static final int SEED_BATCH_SIZE = 100;
+    private static final int MAX_COUNTRIES = 26 * 26;
+    private static final long STARTUP_TIMEOUT_MILLIS = SECONDS.toMillis(300);
+    private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+
+    private final String baseUrl = System.getProperty("loadtest.baseUrl", "http://localhost:8080/resources/api");
+    private final int users = Integer.getInteger("loadtest.users", 1000);
+    private final int countries = Math.min(Integer.getInteger("loadtest.countries", 200), MAX_COUNTRIES);
+    private final int threads = Integer.getInteger("loadtest.threads", 16);
+    private final int warmup = Integer.getInteger("loadtest.warmup", 15);
+    private final int duration = Integer.getInteger("loadtest.duration", 60);
+    private final String report = System.getProperty("loadtest.report", "target/loadtest-report.txt");
+
+    private final LoadTestReport loadTestReport = new LoadTestReport();
+    private final AtomicLong createdUsers = new AtomicLong();
+    private final List<Long> countryIds = new ArrayList<>();
+    private volatile boolean running = true;
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest().run();
+    }
+
+    private void run() throws Exception {
+        LoadTestClient admin = new LoadTestClient(baseUrl);
+        awaitApplication(admin);
+        seedCountries(admin);
+        seedUsers(admin);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(this::runClient);
+        }
+        SECONDS.sleep(warmup);
+        loadTestReport.reset();
+        long start = System.nanoTime();
+        SECONDS.sleep(duration);
+        long elapsed = System.nanoTime() - start;
+        running = false;
+        executor.shutdown();
+        executor.awaitTermination(30, SECONDS);
+
+        String textReport = report;
+        String jsonReport = report.replaceFirst("(\\.txt)?$", ".json");
+        loadTestReport.write(Paths.get(textReport), Paths.get(jsonReport), elapsed,
+                String.format("%d threads, %d users, %d countries, %d s warmup", threads, users, countries, warmup));
+    }
+
+    private void awaitApplication(LoadTestClient admin) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+        while (true) {
+            try {
+                if (admin.login(ADMIN_LOGIN, ADMIN_PASSWORD) == 200) {
+                    return;
+                }
+            } catch (IOException ex) {
+                // not started yet
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Application not available at " + baseUrl);
+            }
+            SECONDS.sleep(1);
+        }
+    }
+
+    private void seedCountries(LoadTestClient admin) throws IOException {
+        HttpResult continent = check(admin.post("/continent", "{\"continentName\":\"Loadtest\"}"));
+        String continentId = firstId(continent.body);
+        for (int start = 0; start < countries; start += SEED_BATCH_SIZE) {
+            StringBuilder json = new StringBuilder("[");
+            for (int i = start; i < Math.min(start + SEED_BATCH_SIZE, countries); i++) {
+                if (i > start) {
+                    json.append(',');
+                }
+                json.append("{\"countryName\":\"Loadtest country ").append(i)
+                        .append("\",\"countryFlag\":\"").append((char) ('A' + i / 26)).append((char) ('A' + i % 26))
+                        .append("\",\"countryContinent\":{\"id\":").append(continentId).append("}}");
+            }
+            HttpResult result = check(admin.post("/country/batch", json.append(']').toString()));
+            Matcher matcher = ID.matcher(result.body);
+            while (matcher.find()) {
+                if (!matcher.group(1).equals(continentId)) {
+                    countryIds.add(Long.valueOf(matcher.group(1)));
+                }
+            }
+        }
+        System.out.printf("Seeded %d countries%n", countryIds.size());
+    }
+
+    private void seedUsers(LoadTestClient admin) throws IOException {
+        for (int start = 0; start < users; start += SEED_BATCH_SIZE) {
+            StringBuilder json = new StringBuilder("[");
+            for (int i = start; i < Math.min(start + SEED_BATCH_SIZE, users); i++) {
+                if (i > start) {
+                    json.append(',');
+                }
+                json.append(userJson(null, SEED_PREFIX + i, "Seeded"));
+            }
+            check(admin.post("/users/batch", json.append(']').toString()));
+        }
+        System.out.printf("Seeded %d users%n", users);
+    }
+
+    /**
+     * Closed-loop client, every iteration runs one operation picked by its
+     * weight in the traffic mix.
+     */
+    private void runClient() {
+        LoadTestClient client = new LoadTestClient(baseUrl);
+        List<String[]> created = new ArrayList<>();
+        try {
+            client.login(ADMIN_LOGIN, ADMIN_PASSWORD);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running) {
+            int pick = random.nextInt(100);
+            String operation;
+            long start = System.nanoTime();
+            boolean success;
+            try {
+                if (pick < 10) {
+                    operation = "login";
+                    success = new LoadTestClient(baseUrl).login(USER_LOGIN, USER_PASSWORD) == 200;
+                } else if (pick < 30) {
+                    operation = "listUsers";
+                    success = client.get("/users?size=" + PAGE_SIZE + "&page=" + random.nextInt(Math.max(users / PAGE_SIZE, 1))).isSuccess();
+                } else if (pick < 50) {
+                    operation = "listCountries";
+                    success = client.get("/country?size=" + PAGE_SIZE + "&page=" + random.nextInt(Math.max(countries / PAGE_SIZE, 1))).isSuccess();
+                } else if (pick < 70) {
+                    operation = "getCountry";
+                    success = client.get("/country/" + countryIds.get(random.nextInt(countryIds.size()))).isSuccess();
+                } else if (pick < 85) {
+                    operation = "getUser";
+                    success = client.get("/users/" + SEED_PREFIX + random.nextInt(users)).isSuccess();
+                } else if (pick < 93 || created.isEmpty()) {
+                    operation = "createUser";
+                    String login = "created" + createdUsers.incrementAndGet();
+                    HttpResult result = client.post("/users", userJson(null, login, "Created"));
+                    success = result.isSuccess();
+                    if (success) {
+                        created.add(new String[]{firstId(result.body), login});
+                    }
+                } else {
+                    operation = "updateUser";
+                    String[] user = created.get(random.nextInt(created.size()));
+                    success = client.put("/users", userJson(user[0], user[1], "Updated" + random.nextInt(1000))).isSuccess();
+                }
+            } catch (IOException ex) {
+                operation = "ioError";
+                success = false;
+            }
+            loadTestReport.record(operation, System.nanoTime() - start, success);
+        }
+    }
+
+    private static String userJson(String id, String login, String firstName) {
+        return "{" + (id != null ? "\"id\":" + id + "," : "")
+                + "\"login\":\"" + login + "\",\"email\":\"" + login + "@example.com\""
+                + ",\"firstName\":\"" + firstName + "\",\"lastName\":\"Loadtest\",\"langKey\":\"en\""
+                + ",\"activated\":true,\"authorities\":[\"ROLE_USER\"]}";
+    }
+
+    private static String firstId(String json) {
+        Matcher matcher = ID.matcher(json);
+        if (!matcher.find()) {
+            throw new IllegalStateException("No id in " + json);
+        }
+        return matcher.group(1);
+    }
+
+    private static HttpResult check(HttpResult result) {
+        if (!result.isSuccess()) {
+            throw new IllegalStateException("Seeding failed with status " + result.status + ": " + result.body);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,108 @@
+package com.apple.hcl4.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Minimal blocking HTTP client of the load test, built on
+ * {@link HttpURLConnection} so that the harness has no dependency beyond the
+ * JDK. The connections are kept alive by the JDK connection cache.
+ */
+class LoadTestClient {
+
+    private static final String AUTHORIZATION = "Authorization";
+
+    private final String baseUrl;
+
+    private volatile String token;
+
+    LoadTestClient(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    String getToken() {
+        return token;
+    }
+
+    /**
+     * Authenticates the user and keeps the bearer token for the next
+     * requests.
+     *
+     * @return the HTTP status
+     */
+    int login(String username, String password) throws IOException {
+        HttpResult result = send("POST", "/authenticate",
+                "{\"username\":\"" + username + "\",\"password\":\"" + password + "\",\"rememberMe\":false}");
+        if (result.status == HttpURLConnection.HTTP_OK) {
+            token = result.authorization;
+        }
+        return result.status;
+    }
+
+    HttpResult get(String path) throws IOException {
+        return send("GET", path, null);
+    }
+
+    HttpResult post(String path, String json) throws IOException {
+        return send("POST", path, json);
+    }
+
+    HttpResult put(String path, String json) throws IOException {
+        return send("PUT", path, json);
+    }
+
+    private HttpResult send(String method, String path, String json) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setRequestProperty("Accept", "application/json");
+        if (token != null) {
+            connection.setRequestProperty(AUTHORIZATION, token);
+        }
+        if (json != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(json.getBytes(UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status < HttpURLConnection.HTTP_BAD_REQUEST ? connection.getInputStream() : connection.getErrorStream();
+        // the body is always drained so that the connection can be reused
+        String body = in == null ? "" : read(in);
+        return new HttpResult(status, body, connection.getHeaderField(AUTHORIZATION));
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = input.read(buffer)) != -1) {
+                out.write(buffer, 0, length);
+            }
+            return new String(out.toByteArray(), UTF_8);
+        }
+    }
+
+    static class HttpResult {
+
+        final int status;
+        final String body;
+        final String authorization;
+
+        HttpResult(int status, String body, String authorization) {
+            this.status = status;
+            this.body = body;
+            this.authorization = authorization;
+        }
+
+        boolean isSuccess() {
+            return status >= 200 && status < 300;
+        }
+    }
+}
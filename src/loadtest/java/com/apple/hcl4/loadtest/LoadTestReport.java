@@ -0,0 +1,109 @@
+package com.apple.hcl4.loadtest;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Latency and throughput of the load test operations, recorded in
+ * microseconds into one HdrHistogram per operation.
+ */
+class LoadTestReport {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = SECONDS.toMicros(60);
+
+    private final ConcurrentMap<String, Operation> operations = new ConcurrentHashMap<>();
+
+    void record(String operation, long durationInNanos, boolean success) {
+        Operation op = operations.computeIfAbsent(operation, key -> new Operation());
+        op.recorder.recordValue(Math.min(Math.max(NANOSECONDS.toMicros(durationInNanos), 1), HIGHEST_TRACKABLE_MICROS));
+        if (!success) {
+            op.errors.increment();
+        }
+    }
+
+    /**
+     * Discards the values recorded so far, at the end of the warmup.
+     */
+    void reset() {
+        operations.values().forEach(op -> {
+            op.recorder.reset();
+            op.errors.reset();
+        });
+    }
+
+    /**
+     * Writes the text and JSON reports of the measured interval.
+     */
+    void write(Path textReport, Path jsonReport, long elapsedInNanos, String description) throws IOException {
+        double seconds = elapsedInNanos / (double) SECONDS.toNanos(1);
+        Map<String, Histogram> histograms = new TreeMap<>();
+        Map<String, Long> errors = new TreeMap<>();
+        operations.forEach((name, op) -> {
+            histograms.put(name, op.recorder.getIntervalHistogram());
+            errors.put(name, op.errors.sum());
+        });
+        Histogram total = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+        histograms.values().forEach(total::add);
+        histograms.put("total", total);
+        errors.put("total", errors.values().stream().mapToLong(Long::longValue).sum());
+
+        StringWriter text = new StringWriter();
+        PrintWriter out = new PrintWriter(text);
+        out.println(description);
+        out.printf("duration %.1f s%n%n", seconds);
+        out.printf("%-14s %10s %10s %8s %10s %10s %10s %10s %10s%n",
+                "operation", "requests", "req/s", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        StringBuilder json = new StringBuilder("{\"durationInSeconds\":").append(seconds).append(",\"operations\":{");
+        String separator = "";
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            Histogram h = entry.getValue();
+            long count = h.getTotalCount();
+            out.printf("%-14s %10d %10.1f %8d %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                    entry.getKey(), count, count / seconds, errors.get(entry.getKey()),
+                    millis(h.getValueAtPercentile(50)), millis(h.getValueAtPercentile(90)),
+                    millis(h.getValueAtPercentile(99)), millis(h.getValueAtPercentile(99.9)),
+                    millis(h.getMaxValue()));
+            json.append(separator).append('"').append(entry.getKey()).append("\":{")
+                    .append("\"requests\":").append(count)
+                    .append(",\"throughput\":").append(count / seconds)
+                    .append(",\"errors\":").append(errors.get(entry.getKey()))
+                    .append(",\"p50\":").append(millis(h.getValueAtPercentile(50)))
+                    .append(",\"p90\":").append(millis(h.getValueAtPercentile(90)))
+                    .append(",\"p99\":").append(millis(h.getValueAtPercentile(99)))
+                    .append(",\"p999\":").append(millis(h.getValueAtPercentile(99.9)))
+                    .append(",\"max\":").append(millis(h.getMaxValue()))
+                    .append('}');
+            separator = ",";
+        }
+        json.append("}}");
+        out.flush();
+
+        System.out.print(text);
+        Files.createDirectories(textReport.toAbsolutePath().getParent());
+        Files.write(textReport, text.toString().getBytes(UTF_8));
+        Files.write(jsonReport, json.toString().getBytes(UTF_8));
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000d;
+    }
+
+    private static class Operation {
+
+        private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+        private final LongAdder errors = new LongAdder();
+    }
+}
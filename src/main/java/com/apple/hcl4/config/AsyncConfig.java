@@ -0,0 +1,33 @@
+package com.apple.hcl4.config;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+@ApplicationScoped
+public class AsyncConfig {
+
+    @Inject
+    @ConfigProperty(name = "service.async.enable", defaultValue = "true")
+    private boolean enable;
+
+    @Inject
+    @ConfigProperty(name = "service.async.timeoutInMillis", defaultValue = "30000")
+    private long timeoutInMillis;
+
+    /**
+     * @return true if the repository-bound endpoints run on the repository
+     * executor, false to run them on the HTTP worker thread
+     */
+    public boolean isEnable() {
+        return enable;
+    }
+
+    /**
+     * @return the timeout of the suspended requests
+     */
+    public long getTimeoutInMillis() {
+        return timeoutInMillis;
+    }
+
+}
@@ -23,10 +23,15 @@ public final class Constants {
 
     public static final String EMAIL_NOT_FOUND_TYPE = "email-not-found";
 
+    public static final String EMPTY_BATCH_TYPE = "empty-batch";
+
     public static final int PASSWORD_MIN_LENGTH = 4;
 
     public static final int PASSWORD_MAX_LENGTH = 100;
 
+    //Number of rows fetched (and then cleared from the persistence context) at a time during exports
+    public static final int EXPORT_FETCH_SIZE = 500;
+
     private Constants() {
     }
 }
@@ -1,5 +1,6 @@
 package com.apple.hcl4.config;
 
+import java.util.Optional;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
@@ -19,6 +20,14 @@ public class MailConfig {
     @ConfigProperty(name = "service.mail.port")
     private int port;
 
+    @Inject
+    @ConfigProperty(name = "service.mail.starttls", defaultValue = "true")
+    private boolean startTls;
+
+    @Inject
+    @ConfigProperty(name = "service.mail.auth.enable", defaultValue = "true")
+    private boolean authEnable;
+
     @Inject
     @ConfigProperty(name = "service.mail.auth.username")
     private String username;
@@ -35,6 +44,70 @@ public class MailConfig {
     @ConfigProperty(name = "service.mail.baseurl")
     private String baseUrl;
 
+    @Inject
+    @ConfigProperty(name = "service.mail.pool.size", defaultValue = "4")
+    private int poolSize;
+
+    @Inject
+    @ConfigProperty(name = "service.mail.pool.maxMessages", defaultValue = "100")
+    private int poolMaxMessages;
+
+    @Inject
+    @ConfigProperty(name = "service.mail.pool.idleInSeconds", defaultValue = "60")
+    private long poolIdleTimeout;
+
+    @Inject
+    @ConfigProperty(name = "service.mail.pool.timeoutInMillis", defaultValue = "10000")
+    private long poolTimeout;
+
+    @Inject
+    @ConfigProperty(name = "service.mail.executor.threads", defaultValue = "2")
+    private int executorThreads;
+
+    @Inject
+    @ConfigProperty(name = "service.mail.executor.queue.size", defaultValue = "100")
+    private int executorQueueSize;
+
+    @Inject
+    @ConfigProperty(name = "service.mail.rate.global", defaultValue = "10")
+    private double rateGlobal;
+
+    @Inject
+    @ConfigProperty(name = "service.mail.rate.global.burst", defaultValue = "20")
+    private double rateGlobalBurst;
+
+    @Inject
+    @ConfigProperty(name = "service.mail.rate.domain", defaultValue = "2")
+    private double rateDomain;
+
+    @Inject
+    @ConfigProperty(name = "service.mail.rate.domain.burst", defaultValue = "5")
+    private double rateDomainBurst;
+
+    @Inject
+    @ConfigProperty(name = "service.mail.rate.domains")
+    private Optional<String> rateDomains;
+
+    @Inject
+    @ConfigProperty(name = "service.mail.outbox.intervalInMillis", defaultValue = "5000")
+    private long outboxInterval;
+
+    @Inject
+    @ConfigProperty(name = "service.mail.outbox.batch.size", defaultValue = "20")
+    private int outboxBatchSize;
+
+    @Inject
+    @ConfigProperty(name = "service.mail.outbox.claimInSeconds", defaultValue = "300")
+    private long outboxClaim;
+
+    @Inject
+    @ConfigProperty(name = "service.mail.outbox.retry.delayInSeconds", defaultValue = "30")
+    private long outboxRetryDelay;
+
+    @Inject
+    @ConfigProperty(name = "service.mail.outbox.retry.max", defaultValue = "8")
+    private int outboxRetryMax;
+
     /**
      * @return the enable
      */
@@ -56,6 +129,20 @@ public class MailConfig {
         return port;
     }
 
+    /**
+     * @return true if the connection is upgraded with STARTTLS
+     */
+    public boolean isStartTls() {
+        return startTls;
+    }
+
+    /**
+     * @return true if the SMTP server requires authentication
+     */
+    public boolean isAuthEnable() {
+        return authEnable;
+    }
+
     /**
      * @return the username
      */
@@ -84,4 +171,124 @@ public class MailConfig {
         return baseUrl;
     }
 
+    /**
+     * @return the maximum number of open SMTP connections
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * @return the number of e-mails sent over a connection before it is
+     * replaced
+     */
+    public int getPoolMaxMessages() {
+        return poolMaxMessages;
+    }
+
+    /**
+     * @return the time after which an unused connection is closed
+     */
+    public long getPoolIdleTimeout() {
+        return poolIdleTimeout;
+    }
+
+    /**
+     * @return the maximum time to wait for a connection when they are all in
+     * use
+     */
+    public long getPoolTimeout() {
+        return poolTimeout;
+    }
+
+    /**
+     * @return the number of threads sending the newly queued e-mails
+     */
+    public int getExecutorThreads() {
+        return executorThreads;
+    }
+
+    /**
+     * @return the maximum number of newly queued e-mails waiting for a thread,
+     * the others wait for the next outbox run
+     */
+    public int getExecutorQueueSize() {
+        return executorQueueSize;
+    }
+
+    /**
+     * @return the maximum number of e-mails sent per second, 0 for no limit
+     */
+    public double getRateGlobal() {
+        return rateGlobal;
+    }
+
+    /**
+     * @return the number of e-mails that may be sent at once after a quiet
+     * period
+     */
+    public double getRateGlobalBurst() {
+        return rateGlobalBurst;
+    }
+
+    /**
+     * @return the maximum number of e-mails sent per second to a recipient
+     * domain, 0 for no limit
+     */
+    public double getRateDomain() {
+        return rateDomain;
+    }
+
+    /**
+     * @return the number of e-mails that may be sent at once to a recipient
+     * domain after a quiet period
+     */
+    public double getRateDomainBurst() {
+        return rateDomainBurst;
+    }
+
+    /**
+     * @return the comma separated {@code <domain>=<e-mails per second>}
+     * overrides of the domain limit
+     */
+    public Optional<String> getRateDomains() {
+        return rateDomains;
+    }
+
+    /**
+     * @return the delay between two runs of the outbox dispatcher
+     */
+    public long getOutboxInterval() {
+        return outboxInterval;
+    }
+
+    /**
+     * @return the number of e-mails claimed and sent over one SMTP connection
+     */
+    public int getOutboxBatchSize() {
+        return outboxBatchSize;
+    }
+
+    /**
+     * @return the time a node keeps its claimed e-mails before another node
+     * may take them over
+     */
+    public long getOutboxClaim() {
+        return outboxClaim;
+    }
+
+    /**
+     * @return the delay before the first retry, doubled on each attempt
+     */
+    public long getOutboxRetryDelay() {
+        return outboxRetryDelay;
+    }
+
+    /**
+     * @return the number of attempts before an e-mail is marked as failed
+     */
+    public int getOutboxRetryMax() {
+        return outboxRetryMax;
+    }
+
 }
@@ -0,0 +1,36 @@
+package com.apple.hcl4.config;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+@ApplicationScoped
+public class MetricsConfig {
+
+    @Inject
+    @ConfigProperty(name = "service.metrics.routes.max", defaultValue = "100")
+    private int maxRoutes;
+
+    @Inject
+    @ConfigProperty(name = "service.metrics.latency.interval", defaultValue = "60")
+    private long latencyIntervalInSeconds;
+
+    /**
+     * @return the maximum number of distinct routes with their own request
+     * metrics, the requests of the other routes are recorded under a shared
+     * overflow route
+     */
+    public int getMaxRoutes() {
+        return maxRoutes;
+    }
+
+    /**
+     * @return the minimum length of the interval over which the latency
+     * percentiles are reported, longer when the metrics are scraped less
+     * often
+     */
+    public long getLatencyIntervalInSeconds() {
+        return latencyIntervalInSeconds;
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.apple.hcl4.config;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+@ApplicationScoped
+public class PasswordConfig {
+
+    @Inject
+    @ConfigProperty(name = "service.password.iterations", defaultValue = "120000")
+    private int iterations;
+
+    @Inject
+    @ConfigProperty(name = "service.password.threads", defaultValue = "0")
+    private int threads;
+
+    @Inject
+    @ConfigProperty(name = "service.password.queue.size", defaultValue = "64")
+    private int queueSize;
+
+    @Inject
+    @ConfigProperty(name = "service.password.timeoutInMillis", defaultValue = "5000")
+    private long timeoutInMillis;
+
+    /**
+     * @return the PBKDF2 iteration count of the new hashes, the hashes stored
+     * with a lower count are rehashed on the next login
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return the number of hashing threads, 0 for the number of processors
+     */
+    public int getThreads() {
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return the maximum number of queued hashing tasks, the tasks beyond it
+     * are rejected with 503 (Service Unavailable)
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * @return the maximum time a request waits for its hashing task
+     */
+    public long getTimeoutInMillis() {
+        return timeoutInMillis;
+    }
+
+}
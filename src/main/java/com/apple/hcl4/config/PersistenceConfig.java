@@ -0,0 +1,35 @@
+package com.apple.hcl4.config;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+@ApplicationScoped
+public class PersistenceConfig {
+
+    @Inject
+    @ConfigProperty(name = "service.persistence.count.ttl", defaultValue = "60")
+    private long countTtlInSeconds;
+
+    @Inject
+    @ConfigProperty(name = "service.persistence.batch.size", defaultValue = "50")
+    private int batchSize;
+
+    /**
+     * @return the maximum age of a cached count, 0 to disable the count cache
+     * or a negative value to only rely on the repository updates
+     */
+    public long getCountTtlInSeconds() {
+        return countTtlInSeconds;
+    }
+
+    /**
+     * @return the number of entities flushed and cleared at a time by the bulk
+     * repository operations, also the JDBC batch size set by the
+     * {@link PersistenceSessionCustomizer}
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.apple.hcl4.config;
+
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.eclipse.persistence.config.SessionCustomizer;
+import org.eclipse.persistence.sessions.Session;
+
+/**
+ * EclipseLink session customizer applying the persistence configuration that
+ * can not be set from the persistence unit properties.
+ * <p>
+ * Ids are handed out from memory in blocks of
+ * {@code service.persistence.id.allocationSize}, so inserts do not have to
+ * read back a generated key and can be sent as JDBC batches. The JDBC batch
+ * size is {@code service.persistence.batch.size}, the number of entities the
+ * bulk repository operations flush at a time, so that each flush is sent as a
+ * single batch.
+ * </p>
+ */
+public class PersistenceSessionCustomizer implements SessionCustomizer {
+
+    private static final String ALLOCATION_SIZE = "service.persistence.id.allocationSize";
+
+    private static final String BATCH_SIZE = "service.persistence.batch.size";
+
+    private static final int DEFAULT_BATCH_SIZE = 50;
+
+    @Override
+    public void customize(Session session) throws Exception {
+        Config config = ConfigProvider.getConfig();
+        config.getOptionalValue(ALLOCATION_SIZE, Integer.class)
+                .ifPresent(allocationSize -> session.getLogin()
+                .getSequences()
+                .values()
+                .forEach(sequence -> sequence.setPreallocationSize(allocationSize)));
+        session.getLogin().setMaxBatchWritingSize(config.getOptionalValue(BATCH_SIZE, Integer.class)
+                .orElse(DEFAULT_BATCH_SIZE));
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.apple.hcl4.config;
 
+import java.util.List;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
@@ -11,6 +12,22 @@ public class SecurityConfig {
     @ConfigProperty(name = "mp.jwt.verify.issuer")
     private String issuer;
 
+    @Inject
+    @ConfigProperty(name = "mp.jwt.sign.algorithm", defaultValue = "RS256")
+    private String signAlgorithm;
+
+    @Inject
+    @ConfigProperty(name = "mp.jwt.sign.privatekey.location", defaultValue = "privateKey.pem")
+    private String privateKeyLocation;
+
+    @Inject
+    @ConfigProperty(name = "mp.jwt.verify.publickey.location", defaultValue = "publicKey.pem")
+    private List<String> publicKeyLocations;
+
+    @Inject
+    @ConfigProperty(name = "mp.jwt.verify.cache.size", defaultValue = "10000")
+    private int verifiedTokenCacheSize;
+
     @Inject
     @ConfigProperty(name = "mp.jwt.verify.validityInSeconds")
     private long tokenValidityInSeconds;
@@ -26,6 +43,38 @@ public class SecurityConfig {
         return issuer;
     }
 
+    /**
+     * @return the JWS algorithm of the issued tokens: RS256, ES256 or EdDSA
+     */
+    public String getSignAlgorithm() {
+        return signAlgorithm;
+    }
+
+    /**
+     * @return the PKCS#8 PEM private key of the issued tokens, matching the
+     * sign algorithm
+     */
+    public String getPrivateKeyLocation() {
+        return privateKeyLocation;
+    }
+
+    /**
+     * @return the X.509 PEM public keys of the accepted tokens, each of them
+     * verifies the tokens of its own algorithm so that the tokens signed
+     * before and after a key or algorithm rotation are both accepted
+     */
+    public List<String> getPublicKeyLocations() {
+        return publicKeyLocations;
+    }
+
+    /**
+     * @return the maximum number of verified tokens kept until their
+     * expiration, 0 to verify the signature on every request
+     */
+    public int getVerifiedTokenCacheSize() {
+        return verifiedTokenCacheSize;
+    }
+
     /**
      * @return the tokenValidityInSeconds
      */
@@ -2,13 +2,13 @@ package com.apple.hcl4.controller;
 
 import com.apple.hcl4.repository.UserRepository;
 import com.apple.hcl4.domain.User;
-import com.apple.hcl4.security.SecurityHelper;
-import com.apple.hcl4.service.MailService;
+import com.apple.hcl4.service.CurrentUserContext;
 import com.apple.hcl4.service.UserService;
 import com.apple.hcl4.controller.vm.KeyAndPasswordVM;
 import com.apple.hcl4.controller.vm.ManagedUserVM;
 import com.apple.hcl4.controller.vm.PasswordChangeVM;
 import com.apple.hcl4.service.dto.UserDTO;
+import com.apple.hcl4.controller.util.AsyncExecutor;
 import com.apple.hcl4.controller.util.HeaderUtil;
 import static com.apple.hcl4.config.Constants.EMAIL_ALREADY_USED_TYPE;
 import static com.apple.hcl4.config.Constants.EMAIL_NOT_FOUND_TYPE;
@@ -28,6 +28,8 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import static javax.ws.rs.core.MediaType.TEXT_PLAIN;
@@ -37,6 +39,7 @@ import static javax.ws.rs.core.Response.Status.CREATED;
 import static javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
+import static org.eclipse.microprofile.metrics.MetricRegistry.name;
 import org.eclipse.microprofile.metrics.annotation.Timed;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
@@ -51,16 +54,16 @@ public class AccountController {
     private Logger log;
 
     @Inject
-    private UserRepository userRepository;
+    private AsyncExecutor asyncExecutor;
 
     @Inject
-    private UserService userService;
+    private UserRepository userRepository;
 
     @Inject
-    private MailService mailService;
+    private UserService userService;
 
     @Inject
-    private SecurityHelper securityHelper;
+    private CurrentUserContext currentUserContext;
 
     @Context
     private HttpServletRequest request;
@@ -69,10 +72,9 @@ public class AccountController {
      * POST /register : register the user.
      *
      * @param managedUserVM the managed user DTO
-     * @return the Response with status 201 (Created) if the user is registered
+     * @param asyncResponse resumed with the Response with status 201 (Created) if the user is registered
      * or 400 (Bad Request) if the login or e-mail is already in use
      */
-    @Timed
     @Operation(summary = "register the user")
     @APIResponse(responseCode = "201", description = "Created")
     @APIResponse(responseCode = "400", description = "Bad Request")
@@ -80,42 +82,44 @@ public class AccountController {
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN})
-    public Response registerAccount(@Valid ManagedUserVM managedUserVM) {
-        if (!checkPasswordLength(managedUserVM.getPassword())) {
-            return Response.status(BAD_REQUEST).entity(INVALID_PASSWORD_TYPE).build();
-        }
-        return userRepository.findOneByLogin(managedUserVM.getLogin().toLowerCase())
-                .map(user -> Response.status(BAD_REQUEST).type(TEXT_PLAIN).entity(LOGIN_ALREADY_USED_TYPE).build())
-                .orElseGet(() -> userRepository.findOneByEmail(managedUserVM.getEmail())
-                .map(user -> Response.status(BAD_REQUEST).type(TEXT_PLAIN).entity(EMAIL_ALREADY_USED_TYPE).build())
-                .orElseGet(() -> {
-                    User user = userService.createUser(managedUserVM.getLogin(), managedUserVM.getPassword(),
-                            managedUserVM.getFirstName(), managedUserVM.getLastName(),
-                            managedUserVM.getEmail().toLowerCase(), managedUserVM.getLangKey());
-                    mailService.sendActivationEmail(user);
-                    return Response.status(CREATED).build();
-                })
-                );
+    public void registerAccount(@Suspended AsyncResponse asyncResponse, @Valid ManagedUserVM managedUserVM) {
+        asyncExecutor.submit(asyncResponse, name(AccountController.class, "registerAccount"), () -> {
+            if (!checkPasswordLength(managedUserVM.getPassword())) {
+                return Response.status(BAD_REQUEST).entity(INVALID_PASSWORD_TYPE).build();
+            }
+            return userRepository.findOneByLogin(managedUserVM.getLogin().toLowerCase())
+                    .map(user -> Response.status(BAD_REQUEST).type(TEXT_PLAIN).entity(LOGIN_ALREADY_USED_TYPE).build())
+                    .orElseGet(() -> userRepository.findOneByEmail(managedUserVM.getEmail())
+                    .map(user -> Response.status(BAD_REQUEST).type(TEXT_PLAIN).entity(EMAIL_ALREADY_USED_TYPE).build())
+                    .orElseGet(() -> {
+                        userService.createUser(managedUserVM.getLogin(), managedUserVM.getPassword(),
+                                managedUserVM.getFirstName(), managedUserVM.getLastName(),
+                                managedUserVM.getEmail().toLowerCase(), managedUserVM.getLangKey());
+                        return Response.status(CREATED).build();
+                    })
+                    );
+        });
     }
 
     /**
      * GET /activate : activate the registered user.
      *
      * @param key the activation key
-     * @return the Response with status 200 (OK) and the activated user in body,
+     * @param asyncResponse resumed with the Response with status 200 (OK) and the activated user in body,
      * or status 500 (Internal Server Error) if the user couldn't be activated
      */
-    @Timed
     @Operation(summary = "activate the registered user")
     @APIResponse(responseCode = "200", description = "OK")
     @APIResponse(responseCode = "500", description = "Internal Server Error")
     @Path("/activate")
     @GET
     @Produces({MediaType.APPLICATION_JSON})
-    public Response activateAccount(@QueryParam("key") String key) {
-        return userService.activateRegistration(key)
-                .map(user -> Response.ok().build())
-                .orElse(Response.status(INTERNAL_SERVER_ERROR).build());
+    public void activateAccount(@Suspended AsyncResponse asyncResponse, @QueryParam("key") String key) {
+        asyncExecutor.submit(asyncResponse, name(AccountController.class, "activateAccount"), () -> {
+            return userService.activateRegistration(key)
+                    .map(user -> Response.ok().build())
+                    .orElse(Response.status(INTERNAL_SERVER_ERROR).build());
+        });
     }
 
     /**
@@ -138,10 +142,9 @@ public class AccountController {
     /**
      * GET /account : get the current user.
      *
-     * @return the Response with status 200 (OK) and the current user in body,
+     * @param asyncResponse resumed with the Response with status 200 (OK) and the current user in body,
      * or status 500 (Internal Server Error) if the user couldn't be returned
      */
-    @Timed
     @Operation(summary = "get the current user")
     @APIResponse(responseCode = "200", description = "OK")
     @APIResponse(responseCode = "500", description = "Internal Server Error")
@@ -149,20 +152,21 @@ public class AccountController {
     @GET
     @Produces({MediaType.APPLICATION_JSON})
     @RolesAllowed(USER)
-    public Response getAccount() {
-        return Optional.ofNullable(userService.getUserWithAuthorities())
-                .map(user -> Response.ok(new UserDTO(user)).build())
-                .orElse(Response.status(INTERNAL_SERVER_ERROR).build());
+    public void getAccount(@Suspended AsyncResponse asyncResponse) {
+        asyncExecutor.submit(asyncResponse, name(AccountController.class, "getAccount"), () -> {
+            return Optional.ofNullable(userService.getUserWithAuthorities())
+                    .map(user -> Response.ok(new UserDTO(user)).build())
+                    .orElse(Response.status(INTERNAL_SERVER_ERROR).build());
+        });
     }
 
     /**
      * POST /account : update the current user information.
      *
      * @param userDTO the current user information
-     * @return the Response with status 200 (OK), or status 400 (Bad Request) or
+     * @param asyncResponse resumed with the Response with status 200 (OK), or status 400 (Bad Request) or
      * 500 (Internal Server Error) if the user couldn't be updated
      */
-    @Timed
     @Operation(summary = "update the current user information")
     @APIResponse(responseCode = "200", description = "OK")
     @APIResponse(responseCode = "400", description = "Bad Request")
@@ -172,30 +176,32 @@ public class AccountController {
     @Consumes({MediaType.APPLICATION_JSON})
     @Produces({MediaType.APPLICATION_JSON})
     @RolesAllowed(USER)
-    public Response saveAccount(@Valid UserDTO userDTO) {
-        final String userLogin = securityHelper.getCurrentUserLogin();
-        Optional<User> existingUser = userRepository.findOneByEmail(userDTO.getEmail());
-        if (existingUser.isPresent() && (!existingUser.get().getLogin().equalsIgnoreCase(userLogin))) {
-            return HeaderUtil.createFailureAlert(Response.status(BAD_REQUEST), "user-management", "emailexists", "Email already in use").build();
-        }
-        return userRepository
-                .findOneByLogin(userLogin)
-                .map(user -> {
-                    userService.updateUser(userDTO.getFirstName(), userDTO.getLastName(), userDTO.getEmail(),
-                            userDTO.getLangKey());
-                    return Response.ok().build();
-                })
-                .orElseGet(() -> Response.status(INTERNAL_SERVER_ERROR).build());
+    public void saveAccount(@Suspended AsyncResponse asyncResponse, @Valid UserDTO userDTO) {
+        asyncExecutor.submit(asyncResponse, name(AccountController.class, "saveAccount"), () -> {
+            return currentUserContext.getUser()
+                    .map(user -> {
+                        // the e-mail is only looked up when it changes
+                        if (!Objects.equals(userDTO.getEmail(), user.getEmail())) {
+                            Optional<User> existingUser = userRepository.findOneByEmail(userDTO.getEmail());
+                            if (existingUser.isPresent() && (!existingUser.get().getLogin().equalsIgnoreCase(user.getLogin()))) {
+                                return HeaderUtil.createFailureAlert(Response.status(BAD_REQUEST), "user-management", "emailexists", "Email already in use").build();
+                            }
+                        }
+                        userService.updateUser(userDTO.getFirstName(), userDTO.getLastName(), userDTO.getEmail(),
+                                userDTO.getLangKey());
+                        return Response.ok().build();
+                    })
+                    .orElseGet(() -> Response.status(INTERNAL_SERVER_ERROR).build());
+        });
     }
 
     /**
      * POST /account/change-password : changes the current user's password
      *
      * @param passwordChangeVM current and new password
-     * @return the Response with status 200 (OK), or status 400 (Bad Request) if
+     * @param asyncResponse resumed with the Response with status 200 (OK), or status 400 (Bad Request) if
      * the new password is not strong enough
      */
-    @Timed
     @Operation(summary = "changes the current user's password")
     @APIResponse(responseCode = "200", description = "OK")
     @APIResponse(responseCode = "400", description = "Bad Request")
@@ -204,12 +210,14 @@ public class AccountController {
     @Consumes({MediaType.APPLICATION_JSON})
     @Produces({MediaType.TEXT_PLAIN})
     @RolesAllowed(USER)
-    public Response changePassword(PasswordChangeVM passwordChangeVM) {
-        if (!checkPasswordLength(passwordChangeVM.getNewPassword())) {
-            return Response.status(BAD_REQUEST).entity(INVALID_PASSWORD_TYPE).build();
-        }
-        userService.changePassword(passwordChangeVM.getCurrentPassword(), passwordChangeVM.getNewPassword());
-        return Response.ok().build();
+    public void changePassword(@Suspended AsyncResponse asyncResponse, PasswordChangeVM passwordChangeVM) {
+        asyncExecutor.submit(asyncResponse, name(AccountController.class, "changePassword"), () -> {
+            if (!checkPasswordLength(passwordChangeVM.getNewPassword())) {
+                return Response.status(BAD_REQUEST).entity(INVALID_PASSWORD_TYPE).build();
+            }
+            userService.changePassword(passwordChangeVM.getCurrentPassword(), passwordChangeVM.getNewPassword());
+            return Response.ok().build();
+        });
     }
 
     /**
@@ -217,22 +225,21 @@ public class AccountController {
      * of the user
      *
      * @param mail the mail of the user
-     * @return the Response with status 200 (OK) if the e-mail was sent, or
+     * @param asyncResponse resumed with the Response with status 200 (OK) if the e-mail was sent, or
      * status 400 (Bad Request) if the e-mail address is not registred
      */
-    @Timed
     @Operation(summary = "Send an e-mail to reset the password")
     @APIResponse(responseCode = "200", description = "OK")
     @APIResponse(responseCode = "400", description = "Bad Request")
     @Path("/account/reset-password/init")
     @POST
     @Produces({MediaType.APPLICATION_JSON})
-    public Response requestPasswordReset(String mail) {
-        return userService.requestPasswordReset(mail)
-                .map(user -> {
-                    mailService.sendPasswordResetMail(user);
-                    return Response.ok().build();
-                }).orElse(Response.status(BAD_REQUEST).entity(EMAIL_NOT_FOUND_TYPE).build());
+    public void requestPasswordReset(@Suspended AsyncResponse asyncResponse, String mail) {
+        asyncExecutor.submit(asyncResponse, name(AccountController.class, "requestPasswordReset"), () -> {
+            return userService.requestPasswordReset(mail)
+                    .map(user -> Response.ok().build())
+                    .orElse(Response.status(BAD_REQUEST).entity(EMAIL_NOT_FOUND_TYPE).build());
+        });
     }
 
     /**
@@ -240,11 +247,10 @@ public class AccountController {
      * user
      *
      * @param keyAndPassword the generated key and the new password
-     * @return the Response with status 200 (OK) if the password has been reset,
+     * @param asyncResponse resumed with the Response with status 200 (OK) if the password has been reset,
      * or status 400 (Bad Request) or 500 (Internal Server Error) if the
      * password could not be reset
      */
-    @Timed
     @Operation(summary = "reset the password")
     @APIResponse(responseCode = "200", description = "OK")
     @APIResponse(responseCode = "400", description = "Bad Request")
@@ -253,13 +259,15 @@ public class AccountController {
     @POST
     @Consumes({MediaType.APPLICATION_JSON})
     @Produces({MediaType.TEXT_PLAIN})
-    public Response finishPasswordReset(KeyAndPasswordVM keyAndPassword) {
-        if (!checkPasswordLength(keyAndPassword.getNewPassword())) {
-            return Response.status(BAD_REQUEST).entity(INVALID_PASSWORD_TYPE).build();
-        }
-        return userService.completePasswordReset(keyAndPassword.getNewPassword(), keyAndPassword.getKey())
-                .map(user -> Response.ok().build())
-                .orElse(Response.status(INTERNAL_SERVER_ERROR).build());
+    public void finishPasswordReset(@Suspended AsyncResponse asyncResponse, KeyAndPasswordVM keyAndPassword) {
+        asyncExecutor.submit(asyncResponse, name(AccountController.class, "finishPasswordReset"), () -> {
+            if (!checkPasswordLength(keyAndPassword.getNewPassword())) {
+                return Response.status(BAD_REQUEST).entity(INVALID_PASSWORD_TYPE).build();
+            }
+            return userService.completePasswordReset(keyAndPassword.getNewPassword(), keyAndPassword.getKey())
+                    .map(user -> Response.ok().build())
+                    .orElse(Response.status(INTERNAL_SERVER_ERROR).build());
+        });
     }
 
     private boolean checkPasswordLength(String password) {
@@ -5,12 +5,11 @@ import static com.apple.hcl4.security.AuthoritiesConstants.USER;
 import javax.annotation.security.DeclareRoles;
 import javax.ws.rs.ApplicationPath;
 import javax.ws.rs.core.Application;
-import org.eclipse.microprofile.auth.LoginConfig;
 
-@LoginConfig(
-        authMethod = "MP-JWT",
-        realmName = "MP-JWT"
-)
+/**
+ * JAX-RS application, the bearer tokens are authenticated by the
+ * {@link com.apple.hcl4.security.JwtAuthenticationMechanism}.
+ */
 @DeclareRoles({ADMIN, USER})
 @ApplicationPath("resources")
 public class ApplicationConfig extends Application {
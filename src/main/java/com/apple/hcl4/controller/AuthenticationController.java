@@ -1,5 +1,6 @@
 package com.apple.hcl4.controller;
 
+import com.apple.hcl4.controller.util.AsyncExecutor;
 import com.apple.hcl4.domain.Authority;
 import com.apple.hcl4.domain.User;
 import com.apple.hcl4.security.TokenProvider;
@@ -13,17 +14,22 @@ import javax.validation.Valid;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.MediaType;
 import static javax.ws.rs.core.HttpHeaders.AUTHORIZATION;
 import static javax.ws.rs.core.Response.Status.UNAUTHORIZED;
-import org.eclipse.microprofile.metrics.annotation.Timed;
+import static org.eclipse.microprofile.metrics.MetricRegistry.name;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 
 @Path("/api")
 public class AuthenticationController {
 
+    @Inject
+    private AsyncExecutor asyncExecutor;
+
     @Inject
     private TokenProvider tokenProvider;
 
@@ -37,33 +43,34 @@ public class AuthenticationController {
      * </p>
      *
      * @param loginDTO the login details to authenticate
-     * @return the Response with status 200 (OK) and with body the new jwt
+     * @param asyncResponse resumed with the Response with status 200 (OK) and with body the new jwt
      * token, or with status 401 (Unauthorized) if the authentication fails
      */
-    @Timed
     @Operation(summary = "authenticate the credential")
     @APIResponse(responseCode = "200", description = "OK")
     @APIResponse(responseCode = "401", description = "Unauthorized")
     @Path("/authenticate")
     @POST
     @Consumes({MediaType.APPLICATION_JSON})
-    public Response login(@Valid LoginDTO loginDTO) {
-        User user;
-        try {
-            user = userService.authenticate(loginDTO);
-            String token = tokenProvider.createToken(
-                    user.getLogin(),
-                    user.getAuthorities().stream().map(Authority::getName).collect(toSet()),
-                    loginDTO.isRememberMe()
-            );
-            return Response.ok()
-                    .header(AUTHORIZATION, BEARER_PREFIX + token)
-                    .build();
-        } catch (AuthenticationException ex) {
-            return Response.status(UNAUTHORIZED)
-                    .header(AuthenticationException.class.getName(), ex.getLocalizedMessage())
-                    .build();
-        }
+    public void login(@Suspended AsyncResponse asyncResponse, @Valid LoginDTO loginDTO) {
+        asyncExecutor.submit(asyncResponse, name(AuthenticationController.class, "login"), () -> {
+            User user;
+            try {
+                user = userService.authenticate(loginDTO);
+                String token = tokenProvider.createToken(
+                        user.getLogin(),
+                        user.getAuthorities().stream().map(Authority::getName).collect(toSet()),
+                        loginDTO.isRememberMe()
+                );
+                return Response.ok()
+                        .header(AUTHORIZATION, BEARER_PREFIX + token)
+                        .build();
+            } catch (AuthenticationException ex) {
+                return Response.status(UNAUTHORIZED)
+                        .header(AuthenticationException.class.getName(), ex.getLocalizedMessage())
+                        .build();
+            }
+        });
     }
 
 }
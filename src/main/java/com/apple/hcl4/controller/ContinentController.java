@@ -1,30 +1,43 @@
 package com.apple.hcl4.controller;
 
 import com.apple.hcl4.domain.Continent;
+import com.apple.hcl4.domain.Country;
 import com.apple.hcl4.repository.ContinentRepository;
+import com.apple.hcl4.service.ReferenceDataService;
+import com.apple.hcl4.service.ReferenceDataSnapshot.Table;
+import com.apple.hcl4.controller.util.AsyncExecutor;
+import com.apple.hcl4.controller.util.ETagUtil;
 import com.apple.hcl4.controller.util.HeaderUtil;
+import static com.apple.hcl4.config.Constants.EXPORT_FETCH_SIZE;
 import static com.apple.hcl4.security.AuthoritiesConstants.USER;
 import org.slf4j.Logger;
 import javax.inject.Inject;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
-import java.util.Optional;
 import javax.annotation.security.RolesAllowed;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Response.ResponseBuilder;
+import com.apple.hcl4.controller.util.JsonStreamingOutput;
 import com.apple.hcl4.controller.util.Page;
 import com.apple.hcl4.controller.util.PaginationUtil;
+import static org.eclipse.microprofile.metrics.MetricRegistry.name;
 import org.eclipse.microprofile.metrics.annotation.Timed;
 import org.eclipse.microprofile.faulttolerance.Timeout;
 import org.eclipse.microprofile.openapi.annotations.Operation;
@@ -40,33 +53,42 @@ public class ContinentController {
     @Inject
     private Logger log;
 
+    @Inject
+    private AsyncExecutor asyncExecutor;
+
     @Inject
     private ContinentRepository continentRepository;
 
+    @Inject
+    private ReferenceDataService referenceDataService;
+
+    @Context
+    private Request request;
+
     private static final String ENTITY_NAME = "continent";
 
     /**
      * POST : Create a new continent.
      *
      * @param continent the continent to create
-     * @return the Response with status 201 (Created) and with body the new
+     * @param asyncResponse resumed with the Response with status 201 (Created) and with body the new
      * continent, or with status 400 (Bad Request) if the continent has already
      * an ID
-     * @throws URISyntaxException if the Location URI syntax is incorrect
      */
-    @Timed
     @Operation(summary = "create a new continent", description = "Create a new continent")
     @APIResponse(responseCode = "201", description = "Created")
     @APIResponse(responseCode = "400", description = "Bad Request")
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response createContinent(Continent continent) throws URISyntaxException {
-        log.debug("REST request to save Continent : {}", continent);
-        continentRepository.create(continent);
-        return HeaderUtil.createEntityCreationAlert(Response.created(new URI("/resources/api/continent/" + continent.getId())),
-                ENTITY_NAME, continent.getId().toString())
-                .entity(continent).build();
+    public void createContinent(@Suspended AsyncResponse asyncResponse, Continent continent) {
+        asyncExecutor.submit(asyncResponse, name(ContinentController.class, "createContinent"), () -> {
+            log.debug("REST request to save Continent : {}", continent);
+            continentRepository.create(continent);
+            return HeaderUtil.createEntityCreationAlert(Response.created(new URI("/resources/api/continent/" + continent.getId())),
+                    ENTITY_NAME, continent.getId().toString())
+                    .entity(continent).build();
+        });
     }
 
     /**
@@ -83,15 +105,21 @@ public class ContinentController {
     @Operation(summary = "update continent", description = "Updates an existing continent")
     @APIResponse(responseCode = "200", description = "OK")
     @APIResponse(responseCode = "400", description = "Bad Request")
+    @APIResponse(responseCode = "412", description = "Precondition Failed")
     @APIResponse(responseCode = "500", description = "Internal Server Error")
     @PUT
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     public Response updateContinent(Continent continent) throws URISyntaxException {
         log.debug("REST request to update Continent : {}", continent);
-        continentRepository.edit(continent);
+        ResponseBuilder precondition = evaluatePreconditions(continent.getId());
+        if (precondition != null) {
+            return precondition.build();
+        }
+        Continent updated = continentRepository.edit(continent);
         return HeaderUtil.createEntityUpdateAlert(Response.ok(), ENTITY_NAME, continent.getId().toString())
-                .entity(continent).build();
+                .tag(ETagUtil.of(updated.getId(), version(updated)))
+                .entity(updated).build();
     }
 
     /**
@@ -99,6 +127,8 @@ public class ContinentController {
      *
      * @param page the pagination information
      * @param size the pagination size information
+     * @param total false to skip the total count, the response then has no
+     * X-Total-Count header and no last link
      *
      * @return the Response with status 200 (OK) and the list of continents in
      * body
@@ -111,14 +141,45 @@ public class ContinentController {
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Timeout
-    public Response getAllContinents(@QueryParam("page") int page, @QueryParam("size") int size) throws URISyntaxException {
+    public Response getAllContinents(@QueryParam("page") int page, @QueryParam("size") int size,
+            @QueryParam("total") @DefaultValue("true") boolean total) throws URISyntaxException {
         log.debug("REST request to get all Continents");
-        List<Continent> continents = continentRepository.findRange(page * size, size);
-        ResponseBuilder builder = Response.ok(continents);
-        PaginationUtil.generatePaginationHttpHeaders(builder, new Page(page, size, continentRepository.count()), "/resources/api/continent");
+        Table<Continent> snapshot = referenceDataService.getSnapshot().getContinents();
+        List<Continent> continents = snapshot.range(page * size, size);
+        EntityTag etag = ETagUtil.of(continents, Continent::getId, ContinentController::version, snapshot.size());
+        ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (notModified != null) {
+            return notModified.tag(etag).build();
+        }
+        ResponseBuilder builder = Response.ok(continents).tag(etag);
+        if (total) {
+            PaginationUtil.generatePaginationHttpHeaders(builder, new Page(page, size, snapshot.size()), "/resources/api/continent");
+        } else {
+            PaginationUtil.generatePaginationHttpHeaders(builder, page, size, size > 0 && continents.size() == size, "/resources/api/continent");
+        }
         return builder.build();
     }
 
+    /**
+     * GET /export : export all the continents.
+     * <p>
+     * The continents are streamed as a JSON array, so the export runs in
+     * bounded memory whatever the number of rows.
+     * </p>
+     *
+     * @return the Response with status 200 (OK) and the continents in body
+     */
+    @Timed
+    @Operation(summary = "export all the continents")
+    @APIResponse(responseCode = "200", description = "OK")
+    @GET
+    @Path("/export")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response exportAllContinents() {
+        log.debug("REST request to export all Continents");
+        return Response.ok(JsonStreamingOutput.of(continentRepository, EXPORT_FETCH_SIZE)).build();
+    }
+
     /**
      * GET /:id : get the "id" continent.
      *
@@ -129,15 +190,22 @@ public class ContinentController {
     @Timed
     @Operation(summary = "get the continent")
     @APIResponse(responseCode = "200", description = "OK")
+    @APIResponse(responseCode = "304", description = "Not Modified")
     @APIResponse(responseCode = "404", description = "Not Found")
     @GET
     @Path("/{id}")
     @Produces(MediaType.APPLICATION_JSON)
     public Response getContinent(@PathParam("id") Long id) {
         log.debug("REST request to get Continent : {}", id);
-        Continent continent = continentRepository.find(id);
-        return Optional.ofNullable(continent)
-                .map(result -> Response.status(Response.Status.OK).entity(continent).build())
+        return referenceDataService.getSnapshot().getContinents().find(id)
+                .map(continent -> {
+                    EntityTag etag = ETagUtil.of(continent.getId(), version(continent));
+                    ResponseBuilder notModified = request.evaluatePreconditions(etag);
+                    if (notModified != null) {
+                        return notModified.tag(etag).build();
+                    }
+                    return Response.status(Response.Status.OK).entity(continent).tag(etag).build();
+                })
                 .orElse(Response.status(Response.Status.NOT_FOUND).build());
     }
 
@@ -151,12 +219,40 @@ public class ContinentController {
     @Operation(summary = "remove the continent")
     @APIResponse(responseCode = "200", description = "OK")
     @APIResponse(responseCode = "404", description = "Not Found")
+    @APIResponse(responseCode = "412", description = "Precondition Failed")
     @DELETE
     @Path("/{id}")
     public Response removeContinent(@PathParam("id") Long id) {
         log.debug("REST request to delete Continent : {}", id);
+        ResponseBuilder precondition = evaluatePreconditions(id);
+        if (precondition != null) {
+            return precondition.build();
+        }
         continentRepository.remove(continentRepository.find(id));
         return HeaderUtil.createEntityDeletionAlert(Response.ok(), ENTITY_NAME, id.toString()).build();
     }
 
+    /**
+     * Evaluates the If-Match header against the current version of the
+     * continent.
+     *
+     * @return the 412 (Precondition Failed) response builder, or null if the
+     * request can proceed
+     */
+    private ResponseBuilder evaluatePreconditions(Long id) {
+        Continent current = id != null ? continentRepository.find(id) : null;
+        if (current == null) {
+            return request.evaluatePreconditions();
+        }
+        return request.evaluatePreconditions(ETagUtil.of(current.getId(), version(current)));
+    }
+
+    /**
+     * Version of the continent as serialized, the body holds its countries so
+     * their ids and versions are folded into the continent version.
+     */
+    private static long version(Continent continent) {
+        return ETagUtil.version(continent.getContinentVersion(), continent.getCountriesSet(), Country::getId, Country::getCountryVersion);
+    }
+
 }
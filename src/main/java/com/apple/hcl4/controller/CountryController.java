@@ -2,29 +2,42 @@ package com.apple.hcl4.controller;
 
 import com.apple.hcl4.domain.Country;
 import com.apple.hcl4.repository.CountryRepository;
+import com.apple.hcl4.service.ReferenceDataService;
+import com.apple.hcl4.service.ReferenceDataSnapshot.Table;
+import com.apple.hcl4.controller.util.AsyncExecutor;
+import com.apple.hcl4.controller.util.ETagUtil;
 import com.apple.hcl4.controller.util.HeaderUtil;
+import static com.apple.hcl4.config.Constants.EMPTY_BATCH_TYPE;
+import static com.apple.hcl4.config.Constants.EXPORT_FETCH_SIZE;
 import static com.apple.hcl4.security.AuthoritiesConstants.USER;
 import org.slf4j.Logger;
 import javax.inject.Inject;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
-import java.util.Optional;
 import javax.annotation.security.RolesAllowed;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Response.ResponseBuilder;
+import com.apple.hcl4.controller.util.JsonStreamingOutput;
 import com.apple.hcl4.controller.util.Page;
 import com.apple.hcl4.controller.util.PaginationUtil;
+import static org.eclipse.microprofile.metrics.MetricRegistry.name;
 import org.eclipse.microprofile.metrics.annotation.Timed;
 import org.eclipse.microprofile.faulttolerance.Timeout;
 import org.eclipse.microprofile.openapi.annotations.Operation;
@@ -40,33 +53,42 @@ public class CountryController {
     @Inject
     private Logger log;
 
+    @Inject
+    private AsyncExecutor asyncExecutor;
+
     @Inject
     private CountryRepository countryRepository;
 
+    @Inject
+    private ReferenceDataService referenceDataService;
+
+    @Context
+    private Request request;
+
     private static final String ENTITY_NAME = "country";
 
     /**
      * POST : Create a new country.
      *
      * @param country the country to create
-     * @return the Response with status 201 (Created) and with body the new
+     * @param asyncResponse resumed with the Response with status 201 (Created) and with body the new
      * country, or with status 400 (Bad Request) if the country has already an
      * ID
-     * @throws URISyntaxException if the Location URI syntax is incorrect
      */
-    @Timed
     @Operation(summary = "create a new country", description = "Create a new country")
     @APIResponse(responseCode = "201", description = "Created")
     @APIResponse(responseCode = "400", description = "Bad Request")
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response createCountry(Country country) throws URISyntaxException {
-        log.debug("REST request to save Country : {}", country);
-        countryRepository.create(country);
-        return HeaderUtil.createEntityCreationAlert(Response.created(new URI("/resources/api/country/" + country.getId())),
-                ENTITY_NAME, country.getId().toString())
-                .entity(country).build();
+    public void createCountry(@Suspended AsyncResponse asyncResponse, Country country) {
+        asyncExecutor.submit(asyncResponse, name(CountryController.class, "createCountry"), () -> {
+            log.debug("REST request to save Country : {}", country);
+            countryRepository.create(country);
+            return HeaderUtil.createEntityCreationAlert(Response.created(new URI("/resources/api/country/" + country.getId())),
+                    ENTITY_NAME, country.getId().toString())
+                    .entity(country).build();
+        });
     }
 
     /**
@@ -83,15 +105,79 @@ public class CountryController {
     @Operation(summary = "update country", description = "Updates an existing country")
     @APIResponse(responseCode = "200", description = "OK")
     @APIResponse(responseCode = "400", description = "Bad Request")
+    @APIResponse(responseCode = "412", description = "Precondition Failed")
     @APIResponse(responseCode = "500", description = "Internal Server Error")
     @PUT
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     public Response updateCountry(Country country) throws URISyntaxException {
         log.debug("REST request to update Country : {}", country);
-        countryRepository.edit(country);
+        ResponseBuilder precondition = evaluatePreconditions(country.getId());
+        if (precondition != null) {
+            return precondition.build();
+        }
+        Country updated = countryRepository.edit(country);
         return HeaderUtil.createEntityUpdateAlert(Response.ok(), ENTITY_NAME, country.getId().toString())
-                .entity(country).build();
+                .tag(ETagUtil.of(updated.getId(), updated.getCountryVersion()))
+                .entity(updated).build();
+    }
+
+    /**
+     * POST /batch : Create new countries.
+     * <p>
+     * All the countries are persisted in a single transaction using JDBC
+     * batching.
+     * </p>
+     *
+     * @param countries the countries to create
+     * @param asyncResponse resumed with the Response with status 201 (Created) and with body the new
+     * countries, or with status 400 (Bad Request) if the batch is empty
+     */
+    @Operation(summary = "create new countries", description = "Create new countries in a single batch")
+    @APIResponse(responseCode = "201", description = "Created")
+    @APIResponse(responseCode = "400", description = "Bad Request")
+    @POST
+    @Path("/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public void createCountries(@Suspended AsyncResponse asyncResponse, List<Country> countries) {
+        asyncExecutor.submit(asyncResponse, name(CountryController.class, "createCountries"), () -> {
+            if (isEmptyBatch(countries)) {
+                return HeaderUtil.createFailureAlert(Response.status(Response.Status.BAD_REQUEST), ENTITY_NAME, "emptybatch", EMPTY_BATCH_TYPE).build();
+            }
+            log.debug("REST request to save {} Countries", countries.size());
+            countryRepository.createAll(countries);
+            return HeaderUtil.createEntityCreationAlert(Response.status(Response.Status.CREATED),
+                    ENTITY_NAME, Integer.toString(countries.size()))
+                    .entity(countries).build();
+        });
+    }
+
+    /**
+     * PUT /batch : Updates existing countries.
+     *
+     * @param countries the countries to update
+     * @param asyncResponse resumed with the Response with status 200 (OK) and with body the updated
+     * countries, or with status 400 (Bad Request) if the batch is empty
+     */
+    @Operation(summary = "update countries", description = "Updates existing countries in a single batch")
+    @APIResponse(responseCode = "200", description = "OK")
+    @APIResponse(responseCode = "400", description = "Bad Request")
+    @APIResponse(responseCode = "500", description = "Internal Server Error")
+    @PUT
+    @Path("/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public void updateCountries(@Suspended AsyncResponse asyncResponse, List<Country> countries) {
+        asyncExecutor.submit(asyncResponse, name(CountryController.class, "updateCountries"), () -> {
+            if (isEmptyBatch(countries)) {
+                return HeaderUtil.createFailureAlert(Response.status(Response.Status.BAD_REQUEST), ENTITY_NAME, "emptybatch", EMPTY_BATCH_TYPE).build();
+            }
+            log.debug("REST request to update {} Countries", countries.size());
+            List<Country> updated = countryRepository.editAll(countries);
+            return HeaderUtil.createEntityUpdateAlert(Response.ok(), ENTITY_NAME, Integer.toString(updated.size()))
+                    .entity(updated).build();
+        });
     }
 
     /**
@@ -99,6 +185,10 @@ public class CountryController {
      *
      * @param page the pagination information
      * @param size the pagination size information
+     * @param total false to skip the total count, the response then has no
+     * X-Total-Count header and no last link
+     * @param cursor the keyset pagination cursor, when present the page
+     * parameter is ignored and the next page is read after the cursor
      *
      * @return the Response with status 200 (OK) and the list of countries in
      * body
@@ -108,17 +198,65 @@ public class CountryController {
     @Timed
     @Operation(summary = "get all the countries")
     @APIResponse(responseCode = "200", description = "OK")
+    @APIResponse(responseCode = "400", description = "Bad Request")
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Timeout
-    public Response getAllCountries(@QueryParam("page") int page, @QueryParam("size") int size) throws URISyntaxException {
+    public Response getAllCountries(@QueryParam("page") int page, @QueryParam("size") int size,
+            @QueryParam("total") @DefaultValue("true") boolean total,
+            @QueryParam("cursor") String cursor) throws URISyntaxException {
         log.debug("REST request to get all Countries");
-        List<Country> countries = countryRepository.findRange(page * size, size);
-        ResponseBuilder builder = Response.ok(countries);
-        PaginationUtil.generatePaginationHttpHeaders(builder, new Page(page, size, countryRepository.count()), "/resources/api/country");
+        Table<Country> snapshot = referenceDataService.getSnapshot().getCountries();
+        if (cursor != null) {
+            List<Country> countries = snapshot.rangeAfter(PaginationUtil.decodeCursor(cursor), size);
+            String nextCursor = null;
+            if (size > 0 && countries.size() == size) {
+                nextCursor = PaginationUtil.encodeCursor(countries.get(countries.size() - 1).getId());
+            }
+            EntityTag etag = ETagUtil.of(countries, Country::getId, Country::getCountryVersion, snapshot.size());
+            ResponseBuilder notModified = request.evaluatePreconditions(etag);
+            if (notModified != null) {
+                return notModified.tag(etag).build();
+            }
+            ResponseBuilder builder = Response.ok(countries).tag(etag);
+            PaginationUtil.generateCursorPaginationHttpHeaders(builder, nextCursor, size, "/resources/api/country");
+            return builder.build();
+        }
+        List<Country> countries = snapshot.range(page * size, size);
+        EntityTag etag = ETagUtil.of(countries, Country::getId, Country::getCountryVersion, snapshot.size());
+        ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (notModified != null) {
+            return notModified.tag(etag).build();
+        }
+        ResponseBuilder builder = Response.ok(countries).tag(etag);
+        if (total) {
+            PaginationUtil.generatePaginationHttpHeaders(builder, new Page(page, size, snapshot.size()), "/resources/api/country");
+        } else {
+            PaginationUtil.generatePaginationHttpHeaders(builder, page, size, size > 0 && countries.size() == size, "/resources/api/country");
+        }
         return builder.build();
     }
 
+    /**
+     * GET /export : export all the countries.
+     * <p>
+     * The countries are streamed as a JSON array, so the export runs in
+     * bounded memory whatever the number of rows.
+     * </p>
+     *
+     * @return the Response with status 200 (OK) and the countries in body
+     */
+    @Timed
+    @Operation(summary = "export all the countries")
+    @APIResponse(responseCode = "200", description = "OK")
+    @GET
+    @Path("/export")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response exportAllCountries() {
+        log.debug("REST request to export all Countries");
+        return Response.ok(JsonStreamingOutput.of(countryRepository, EXPORT_FETCH_SIZE)).build();
+    }
+
     /**
      * GET /:id : get the "id" country.
      *
@@ -129,15 +267,43 @@ public class CountryController {
     @Timed
     @Operation(summary = "get the country")
     @APIResponse(responseCode = "200", description = "OK")
+    @APIResponse(responseCode = "304", description = "Not Modified")
     @APIResponse(responseCode = "404", description = "Not Found")
     @GET
     @Path("/{id}")
     @Produces(MediaType.APPLICATION_JSON)
     public Response getCountry(@PathParam("id") Long id) {
         log.debug("REST request to get Country : {}", id);
-        Country country = countryRepository.find(id);
-        return Optional.ofNullable(country)
-                .map(result -> Response.status(Response.Status.OK).entity(country).build())
+        return referenceDataService.getSnapshot().getCountries().find(id)
+                .map(country -> {
+                    EntityTag etag = ETagUtil.of(country.getId(), country.getCountryVersion());
+                    ResponseBuilder notModified = request.evaluatePreconditions(etag);
+                    if (notModified != null) {
+                        return notModified.tag(etag).build();
+                    }
+                    return Response.status(Response.Status.OK).entity(country).tag(etag).build();
+                })
+                .orElse(Response.status(Response.Status.NOT_FOUND).build());
+    }
+
+    /**
+     * GET /flag/:countryFlag : get the country by its 2-letter flag.
+     *
+     * @param countryFlag the flag of the country to retrieve, case insensitive
+     * @return the Response with status 200 (OK) and with body the country, or
+     * with status 404 (Not Found)
+     */
+    @Timed
+    @Operation(summary = "get the country by flag")
+    @APIResponse(responseCode = "200", description = "OK")
+    @APIResponse(responseCode = "404", description = "Not Found")
+    @GET
+    @Path("/flag/{countryFlag}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getCountryByFlag(@PathParam("countryFlag") String countryFlag) {
+        log.debug("REST request to get Country by flag : {}", countryFlag);
+        return referenceDataService.getSnapshot().findCountryByFlag(countryFlag)
+                .map(country -> Response.status(Response.Status.OK).entity(country).build())
                 .orElse(Response.status(Response.Status.NOT_FOUND).build());
     }
 
@@ -151,12 +317,36 @@ public class CountryController {
     @Operation(summary = "remove the country")
     @APIResponse(responseCode = "200", description = "OK")
     @APIResponse(responseCode = "404", description = "Not Found")
+    @APIResponse(responseCode = "412", description = "Precondition Failed")
     @DELETE
     @Path("/{id}")
     public Response removeCountry(@PathParam("id") Long id) {
         log.debug("REST request to delete Country : {}", id);
+        ResponseBuilder precondition = evaluatePreconditions(id);
+        if (precondition != null) {
+            return precondition.build();
+        }
         countryRepository.remove(countryRepository.find(id));
         return HeaderUtil.createEntityDeletionAlert(Response.ok(), ENTITY_NAME, id.toString()).build();
     }
 
+    /**
+     * Evaluates the If-Match header against the current version of the
+     * country.
+     *
+     * @return the 412 (Precondition Failed) response builder, or null if the
+     * request can proceed
+     */
+    private ResponseBuilder evaluatePreconditions(Long id) {
+        Country current = id != null ? countryRepository.find(id) : null;
+        if (current == null) {
+            return request.evaluatePreconditions();
+        }
+        return request.evaluatePreconditions(ETagUtil.of(current.getId(), current.getCountryVersion()));
+    }
+
+    private static boolean isEmptyBatch(List<Country> countries) {
+        return countries == null || countries.isEmpty() || countries.contains(null);
+    }
+
 }
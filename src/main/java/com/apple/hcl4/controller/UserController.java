@@ -2,26 +2,30 @@ package com.apple.hcl4.controller;
 
 import com.apple.hcl4.repository.UserRepository;
 import com.apple.hcl4.domain.User;
-import com.apple.hcl4.service.MailService;
 import com.apple.hcl4.service.UserService;
 import com.apple.hcl4.controller.vm.ManagedUserVM;
 import com.apple.hcl4.service.dto.UserDTO;
+import com.apple.hcl4.controller.util.AsyncExecutor;
 import com.apple.hcl4.controller.util.HeaderUtil;
+import com.apple.hcl4.controller.util.JsonStreamingOutput;
 import com.apple.hcl4.controller.util.Page;
 import com.apple.hcl4.controller.util.PaginationUtil;
 import static com.apple.hcl4.config.Constants.EMAIL_ALREADY_USED_TYPE;
+import static com.apple.hcl4.config.Constants.EMPTY_BATCH_TYPE;
+import static com.apple.hcl4.config.Constants.EXPORT_FETCH_SIZE;
 import static com.apple.hcl4.config.Constants.LOGIN_ALREADY_USED_TYPE;
 import static com.apple.hcl4.security.AuthoritiesConstants.ADMIN;
 import static com.apple.hcl4.security.AuthoritiesConstants.USER;
 import org.slf4j.Logger;
 import javax.inject.Inject;
 import java.net.URI;
-import java.net.URISyntaxException;
 import java.util.*;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 import javax.annotation.security.RolesAllowed;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
@@ -29,13 +33,16 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
 import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
+import static javax.ws.rs.core.Response.Status.CREATED;
 import static javax.ws.rs.core.Response.Status.NOT_FOUND;
+import static org.eclipse.microprofile.metrics.MetricRegistry.name;
 import org.eclipse.microprofile.metrics.annotation.Timed;
-import org.eclipse.microprofile.faulttolerance.Timeout;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 
@@ -53,10 +60,10 @@ public class UserController {
     private Logger log;
 
     @Inject
-    private UserRepository userRepository;
+    private AsyncExecutor asyncExecutor;
 
     @Inject
-    private MailService mailService;
+    private UserRepository userRepository;
 
     @Inject
     private UserService userService;
@@ -70,12 +77,10 @@ public class UserController {
      * </p>
      *
      * @param managedUserVM the user to create
-     * @return the Response with status 201 (Created) and with body the new
+     * @param asyncResponse resumed with the Response with status 201 (Created) and with body the new
      * user, or with status 400 (Bad Request) if the login or email is already
      * in use
-     * @throws URISyntaxException if the Location URI syntax is incorrect
      */
-    @Timed
     @Operation(summary = "create a new user")
     @APIResponse(responseCode = "201", description = "Created")
     @APIResponse(responseCode = "400", description = "Bad Request")
@@ -84,32 +89,75 @@ public class UserController {
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     @RolesAllowed(ADMIN)
-    public Response createUser(ManagedUserVM managedUserVM) throws URISyntaxException {
-        log.debug("REST request to save User : {}", managedUserVM);
-
-        //Lowercase the user login before comparing with database
-        if (userRepository.findOneByLogin(managedUserVM.getLogin().toLowerCase()).isPresent()) {
-            return HeaderUtil.createFailureAlert(Response.status(BAD_REQUEST), "userManagement", "userexists", LOGIN_ALREADY_USED_TYPE).build();
-        } else if (userRepository.findOneByEmail(managedUserVM.getEmail()).isPresent()) {
-            return HeaderUtil.createFailureAlert(Response.status(BAD_REQUEST), "userManagement", "emailexists", EMAIL_ALREADY_USED_TYPE).build();
-        } else {
-            User newUser = userService.createUser(managedUserVM);
-            mailService.sendCreationEmail(newUser);
-            return HeaderUtil.createAlert(Response.created(new URI("/resources/api/users/" + newUser.getLogin())),
-                    "userManagement.created", newUser.getLogin()).entity(new UserDTO(newUser)).build();
-        }
+    public void createUser(@Suspended AsyncResponse asyncResponse, ManagedUserVM managedUserVM) {
+        asyncExecutor.submit(asyncResponse, name(UserController.class, "createUser"), () -> {
+            log.debug("REST request to save User : {}", managedUserVM);
+
+            //Lowercase the user login before comparing with database
+            if (userRepository.findOneByLogin(managedUserVM.getLogin().toLowerCase()).isPresent()) {
+                return HeaderUtil.createFailureAlert(Response.status(BAD_REQUEST), "userManagement", "userexists", LOGIN_ALREADY_USED_TYPE).build();
+            } else if (userRepository.findOneByEmail(managedUserVM.getEmail()).isPresent()) {
+                return HeaderUtil.createFailureAlert(Response.status(BAD_REQUEST), "userManagement", "emailexists", EMAIL_ALREADY_USED_TYPE).build();
+            } else {
+                User newUser = userService.createUser(managedUserVM);
+                return HeaderUtil.createAlert(Response.created(new URI("/resources/api/users/" + newUser.getLogin())),
+                        "userManagement.created", newUser.getLogin()).entity(new UserDTO(newUser)).build();
+            }
+        });
+    }
+
+    /**
+     * POST /users/batch : Creates new users.
+     * <p>
+     * All the users are persisted in a single transaction using JDBC batching,
+     * and a mail is sent to each of them. The batch is rejected as a whole if
+     * a login or email is already in use or used twice in the batch.
+     * </p>
+     *
+     * @param managedUserVMs the users to create
+     * @param asyncResponse resumed with the Response with status 201 (Created) and with body the new
+     * users, or with status 400 (Bad Request) if the batch is empty or if a
+     * login or email is already in use
+     */
+    @Operation(summary = "create new users")
+    @APIResponse(responseCode = "201", description = "Created")
+    @APIResponse(responseCode = "400", description = "Bad Request")
+    @Path(value = "/users/batch")
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @RolesAllowed(ADMIN)
+    public void createUsers(@Suspended AsyncResponse asyncResponse, List<ManagedUserVM> managedUserVMs) {
+        asyncExecutor.submit(asyncResponse, name(UserController.class, "createUsers"), () -> {
+            if (managedUserVMs == null || managedUserVMs.isEmpty() || managedUserVMs.contains(null)) {
+                return HeaderUtil.createFailureAlert(Response.status(BAD_REQUEST), "userManagement", "emptybatch", EMPTY_BATCH_TYPE).build();
+            }
+            log.debug("REST request to save {} Users", managedUserVMs.size());
+            //Lowercase the user logins before comparing with each other and with database
+            Set<String> logins = managedUserVMs.stream().map(managedUserVM -> managedUserVM.getLogin().toLowerCase()).collect(toSet());
+            if (logins.size() < managedUserVMs.size() || !userRepository.findExistingLogins(logins).isEmpty()) {
+                return HeaderUtil.createFailureAlert(Response.status(BAD_REQUEST), "userManagement", "userexists", LOGIN_ALREADY_USED_TYPE).build();
+            }
+            Set<String> emails = managedUserVMs.stream().map(ManagedUserVM::getEmail).collect(toSet());
+            if (emails.size() < managedUserVMs.size() || !userRepository.findExistingEmails(emails).isEmpty()) {
+                return HeaderUtil.createFailureAlert(Response.status(BAD_REQUEST), "userManagement", "emailexists", EMAIL_ALREADY_USED_TYPE).build();
+            }
+            List<User> newUsers = userService.createUsers(managedUserVMs);
+            return HeaderUtil.createAlert(Response.status(CREATED),
+                    "userManagement.created", Integer.toString(newUsers.size()))
+                    .entity(newUsers.stream().map(UserDTO::new).collect(toList())).build();
+        });
     }
 
     /**
      * PUT /users : Updates an existing User.
      *
      * @param managedUserVM the user to update
-     * @return the Response with status 200 (OK) and with body the updated user,
+     * @param asyncResponse resumed with the Response with status 200 (OK) and with body the updated user,
      * or with status 400 (Bad Request) if the login or email is already in use,
      * or with status 500 (Internal Server Error) if the user couldn't be
      * updated
      */
-    @Timed
     @Operation(summary = "update user")
     @APIResponse(responseCode = "200", description = "OK")
     @APIResponse(responseCode = "400", description = "Bad Request")
@@ -119,21 +167,23 @@ public class UserController {
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     @RolesAllowed(ADMIN)
-    public Response updateUser(ManagedUserVM managedUserVM) {
-        log.debug("REST request to update User : {}", managedUserVM);
-        Optional<User> existingUser = userRepository.findOneByEmail(managedUserVM.getEmail());
-        if (existingUser.isPresent() && (!existingUser.get().getId().equals(managedUserVM.getId()))) {
-            return HeaderUtil.createFailureAlert(Response.status(BAD_REQUEST), "userManagement", "emailexists", EMAIL_ALREADY_USED_TYPE).build();
-        }
-        existingUser = userRepository.findOneByLogin(managedUserVM.getLogin().toLowerCase());
-        if (existingUser.isPresent() && (!existingUser.get().getId().equals(managedUserVM.getId()))) {
-            return HeaderUtil.createFailureAlert(Response.status(BAD_REQUEST), "userManagement", "userexists", LOGIN_ALREADY_USED_TYPE).build();
-        }
-        Optional<UserDTO> updatedUser = userService.updateUser(managedUserVM);
-
-        return updatedUser.map(userDTO -> HeaderUtil.createAlert(Response.ok(userDTO),
-                "userManagement.updated", managedUserVM.getLogin()).build())
-                .orElseGet(() -> Response.status(NOT_FOUND).build());
+    public void updateUser(@Suspended AsyncResponse asyncResponse, ManagedUserVM managedUserVM) {
+        asyncExecutor.submit(asyncResponse, name(UserController.class, "updateUser"), () -> {
+            log.debug("REST request to update User : {}", managedUserVM);
+            Optional<User> existingUser = userRepository.findOneByEmail(managedUserVM.getEmail());
+            if (existingUser.isPresent() && (!existingUser.get().getId().equals(managedUserVM.getId()))) {
+                return HeaderUtil.createFailureAlert(Response.status(BAD_REQUEST), "userManagement", "emailexists", EMAIL_ALREADY_USED_TYPE).build();
+            }
+            existingUser = userRepository.findOneByLogin(managedUserVM.getLogin().toLowerCase());
+            if (existingUser.isPresent() && (!existingUser.get().getId().equals(managedUserVM.getId()))) {
+                return HeaderUtil.createFailureAlert(Response.status(BAD_REQUEST), "userManagement", "userexists", LOGIN_ALREADY_USED_TYPE).build();
+            }
+            Optional<UserDTO> updatedUser = userService.updateUser(managedUserVM);
+
+            return updatedUser.map(userDTO -> HeaderUtil.createAlert(Response.ok(userDTO),
+                    "userManagement.updated", managedUserVM.getLogin()).build())
+                    .orElseGet(() -> Response.status(NOT_FOUND).build());
+        });
     }
 
     /**
@@ -141,27 +191,63 @@ public class UserController {
      *
      * @param page the pagination information
      * @param size the pagination size information
-     * @return the Response with status 200 (OK) and with body all users
-     * @throws URISyntaxException if the pagination headers couldn't be
-     * generated
+     * @param total false to skip the total count, the response then has no
+     * X-Total-Count header and no last link
+     * @param cursor the keyset pagination cursor, when present the page
+     * parameter is ignored and the next page is read after the cursor
+     * @param asyncResponse resumed with the Response with status 200 (OK) and with body all users
      */
-    @Timed
     @Operation(summary = "get all the users")
     @APIResponse(responseCode = "200", description = "OK")
+    @APIResponse(responseCode = "400", description = "Bad Request")
     @Path(value = "/users")
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    @Timeout
     @RolesAllowed(USER)
-    public Response getAllUsers(@QueryParam("page") int page, @QueryParam("size") int size) throws URISyntaxException {
-        List<User> userList = userRepository.getUsersWithAuthorities(page * size, size);
-        List<UserDTO> userDTOs = userList.stream()
-                .map(UserDTO::new)
-                .collect(toList());
-
-        ResponseBuilder builder = Response.ok(userDTOs);
-        PaginationUtil.generatePaginationHttpHeaders(builder, new Page(page, size, userRepository.count()), "/resources/api/users");
-        return builder.build();
+    public void getAllUsers(@Suspended AsyncResponse asyncResponse, @QueryParam("page") int page, @QueryParam("size") int size,
+            @QueryParam("total") @DefaultValue("true") boolean total,
+            @QueryParam("cursor") String cursor) {
+        asyncExecutor.submit(asyncResponse, name(UserController.class, "getAllUsers"), () -> {
+            if (cursor != null) {
+                List<UserDTO> userDTOs = userRepository.getUserDTOsAfter(PaginationUtil.decodeCursor(cursor), size);
+                String nextCursor = null;
+                if (size > 0 && userDTOs.size() == size) {
+                    nextCursor = PaginationUtil.encodeCursor(userDTOs.get(userDTOs.size() - 1).getId());
+                }
+                ResponseBuilder builder = Response.ok(userDTOs);
+                PaginationUtil.generateCursorPaginationHttpHeaders(builder, nextCursor, size, "/resources/api/users");
+                return builder.build();
+            }
+            List<UserDTO> userDTOs = userRepository.getUserDTOs(page * size, size);
+            ResponseBuilder builder = Response.ok(userDTOs);
+            if (total) {
+                PaginationUtil.generatePaginationHttpHeaders(builder, new Page(page, size, userRepository.count()), "/resources/api/users");
+            } else {
+                PaginationUtil.generatePaginationHttpHeaders(builder, page, size, size > 0 && userDTOs.size() == size, "/resources/api/users");
+            }
+            return builder.build();
+        });
+    }
+
+    /**
+     * GET /users/export : export all users.
+     * <p>
+     * The users are streamed as a JSON array, so the export runs in bounded
+     * memory whatever the number of accounts.
+     * </p>
+     *
+     * @return the Response with status 200 (OK) and with body all users
+     */
+    @Timed
+    @Operation(summary = "export all the users")
+    @APIResponse(responseCode = "200", description = "OK")
+    @Path(value = "/users/export")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @RolesAllowed(ADMIN)
+    public Response exportAllUsers() {
+        log.debug("REST request to export all Users");
+        return Response.ok(JsonStreamingOutput.<UserDTO>of(action -> userRepository.streamUserDTOs(EXPORT_FETCH_SIZE, action))).build();
     }
 
     /**
@@ -181,10 +267,9 @@ public class UserController {
      * GET /users/:login : get the "login" user.
      *
      * @param login the login of the user to find
-     * @return the Response with status 200 (OK) and with body the "login" user,
+     * @param asyncResponse resumed with the Response with status 200 (OK) and with body the "login" user,
      * or with status 404 (Not Found)
      */
-    @Timed
     @Operation(summary = "get the user")
     @APIResponse(responseCode = "200", description = "OK")
     @APIResponse(responseCode = "404", description = "Not Found")
@@ -192,21 +277,22 @@ public class UserController {
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @RolesAllowed(USER)
-    public Response getUser(@PathParam("login") String login) {
-        log.debug("REST request to get User : {}", login);
-        return userService.getUserWithAuthoritiesByLogin(login)
-                .map(UserDTO::new)
-                .map(userDTO -> Response.ok(userDTO).build())
-                .orElse(Response.status(NOT_FOUND).build());
+    public void getUser(@Suspended AsyncResponse asyncResponse, @PathParam("login") String login) {
+        asyncExecutor.submit(asyncResponse, name(UserController.class, "getUser"), () -> {
+            log.debug("REST request to get User : {}", login);
+            return userService.getUserWithAuthoritiesByLogin(login)
+                    .map(UserDTO::new)
+                    .map(userDTO -> Response.ok(userDTO).build())
+                    .orElse(Response.status(NOT_FOUND).build());
+        });
     }
 
     /**
      * DELETE /users/:login : delete the "login" User.
      *
      * @param login the login of the user to delete
-     * @return the Response with status 200 (OK)
+     * @param asyncResponse resumed with the Response with status 200 (OK)
      */
-    @Timed
     @Operation(summary = "remove the user")
     @APIResponse(responseCode = "200", description = "OK")
     @APIResponse(responseCode = "404", description = "Not Found")
@@ -214,9 +300,11 @@ public class UserController {
     @DELETE
     @Produces(MediaType.APPLICATION_JSON)
     @RolesAllowed(ADMIN)
-    public Response deleteUser(@PathParam("login") String login) {
-        log.debug("REST request to delete User: {}", login);
-        userService.deleteUser(login);
-        return HeaderUtil.createAlert(Response.ok(), "userManagement.deleted", login).build();
+    public void deleteUser(@Suspended AsyncResponse asyncResponse, @PathParam("login") String login) {
+        asyncExecutor.submit(asyncResponse, name(UserController.class, "deleteUser"), () -> {
+            log.debug("REST request to delete User: {}", login);
+            userService.deleteUser(login);
+            return HeaderUtil.createAlert(Response.ok(), "userManagement.deleted", login).build();
+        });
     }
 }
@@ -0,0 +1,114 @@
+package com.apple.hcl4.controller.util;
+
+import com.apple.hcl4.config.AsyncConfig;
+import static com.apple.hcl4.metrics.InstrumentedFilter.TIMEOUTS_METRICS;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.control.RequestContextController;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Response;
+import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Timer;
+import org.slf4j.Logger;
+
+/**
+ * Runs the repository-bound endpoints on the dedicated, sized repository
+ * executor so that a slow database does not exhaust the HTTP worker threads.
+ * <p>
+ * The executor is defined in {@code WEB-INF/glassfish-resources.xml}. A
+ * suspended request which is not resumed in time answers 503 (Service
+ * Unavailable) and marks the {@code InstrumentedFilter.timeouts} meter, a task
+ * rejected by the full executor queue answers 503 as well. Jersey runs the
+ * {@code AsyncResponse} timeout on its own scheduler and never lets the
+ * servlet {@code AsyncContext} time out, so the timeout is only seen here. As
+ * {@code @Timed} on a suspended resource method would only time the hand-off,
+ * each task is timed under the name of its resource method instead.
+ * </p>
+ * <p>
+ * Every endpoint reading or writing through a repository is submitted here,
+ * except the ones which stay on the HTTP worker thread : the country and
+ * continent updates and deletions evaluate their preconditions on the
+ * injected {@code Request}, the exports stream their body after the resource
+ * method returned, and the endpoints served from the reference data snapshot,
+ * the cached authorities or the security context do not hit the database.
+ * </p>
+ */
+@ApplicationScoped
+public class AsyncExecutor {
+
+    @Inject
+    private Logger log;
+
+    @Resource(lookup = "java:app/concurrent/repositoryExecutor")
+    private ManagedExecutorService executor;
+
+    @Inject
+    private AsyncConfig asyncConfig;
+
+    @Inject
+    private MetricRegistry registry;
+
+    @Inject
+    private Instance<RequestContextController> requestContextControllers;
+
+    /**
+     * Runs the task on the repository executor and resumes the request with
+     * its response.
+     *
+     * @param asyncResponse the suspended request
+     * @param timerName the name of the timer of the task, usually the one of
+     * the resource method
+     * @param task the task building the response
+     */
+    public void submit(AsyncResponse asyncResponse, String timerName, Callable<Response> task) {
+        if (!asyncConfig.isEnable()) {
+            resume(asyncResponse, timerName, task);
+            return;
+        }
+        asyncResponse.setTimeout(asyncConfig.getTimeoutInMillis(), MILLISECONDS);
+        asyncResponse.setTimeoutHandler(response -> {
+            registry.meter(TIMEOUTS_METRICS).mark();
+            response.resume(Response.status(SERVICE_UNAVAILABLE).build());
+        });
+        try {
+            executor.execute(() -> {
+                // the repositories rely on the request scoped EntityManager
+                RequestContextController requestContextController = requestContextControllers.get();
+                boolean activated = requestContextController.activate();
+                try {
+                    resume(asyncResponse, timerName, task);
+                } finally {
+                    if (activated) {
+                        requestContextController.deactivate();
+                    }
+                    requestContextControllers.destroy(requestContextController);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            log.warn("Repository executor saturated, request rejected");
+            asyncResponse.resume(Response.status(SERVICE_UNAVAILABLE).build());
+        }
+    }
+
+    private void resume(AsyncResponse asyncResponse, String timerName, Callable<Response> task) {
+        Response response;
+        Timer.Context context = registry.timer(timerName).time();
+        try {
+            response = task.call();
+        } catch (Exception ex) {
+            context.stop();
+            asyncResponse.resume(ex);
+            return;
+        }
+        context.stop();
+        asyncResponse.resume(response);
+    }
+
+}
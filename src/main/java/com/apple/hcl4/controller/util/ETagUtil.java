@@ -0,0 +1,50 @@
+package com.apple.hcl4.controller.util;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import javax.ws.rs.core.EntityTag;
+
+/**
+ * Utility class for the entity tags built from the JPA version columns.
+ */
+public class ETagUtil {
+
+    public static EntityTag of(Object id, long version) {
+        return new EntityTag(id + "-" + version);
+    }
+
+    /**
+     * Aggregate tag of a page : changes whenever an entity of the page is
+     * added, removed or updated, or when the total count changes.
+     */
+    public static <T> EntityTag of(List<T> page, Function<T, Object> idMapper, ToLongFunction<T> versionMapper, int totalElements) {
+        long hash = totalElements;
+        for (T entity : page) {
+            hash = 31 * hash + idMapper.apply(entity).hashCode();
+            hash = 31 * hash + versionMapper.applyAsLong(entity);
+        }
+        return new EntityTag(page.size() + "-" + Long.toHexString(hash));
+    }
+
+    /**
+     * Version of an entity serialized with a collection of other entities :
+     * changes whenever a member is added, removed or updated, whatever the
+     * iteration order of the collection.
+     */
+    public static <T> long version(long version, Collection<T> members, Function<T, Object> idMapper, ToLongFunction<T> versionMapper) {
+        long hash = 0;
+        for (T member : members) {
+            hash += mix(31L * idMapper.apply(member).hashCode() + versionMapper.applyAsLong(member));
+        }
+        return 31 * (31 * version + members.size()) + hash;
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+
+}
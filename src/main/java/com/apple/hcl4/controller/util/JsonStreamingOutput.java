@@ -0,0 +1,71 @@
+package com.apple.hcl4.controller.util;
+
+import com.apple.hcl4.repository.AbstractRepository;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.function.Consumer;
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * StreamingOutput writing all the elements of a source as a JSON array,
+ * element by element, so that an export runs in bounded memory.
+ *
+ * @param <T> the serialized type
+ */
+public class JsonStreamingOutput<T> implements StreamingOutput {
+
+    private static final Jsonb JSONB = JsonbBuilder.create();
+
+    private final Consumer<Consumer<? super T>> source;
+
+    private JsonStreamingOutput(Consumer<Consumer<? super T>> source) {
+        this.source = source;
+    }
+
+    /**
+     * @param repository the repository streaming its entities
+     * @param fetchSize the number of rows read at a time
+     */
+    public static <E> JsonStreamingOutput<E> of(AbstractRepository<E, ?> repository, int fetchSize) {
+        return new JsonStreamingOutput<>(action -> repository.streamAll(fetchSize, action));
+    }
+
+    /**
+     * @param source the source passing each element to the given action
+     */
+    public static <T> JsonStreamingOutput<T> of(Consumer<Consumer<? super T>> source) {
+        return new JsonStreamingOutput<>(source);
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, UTF_8));
+        writer.write('[');
+        boolean[] first = {true};
+        try {
+            source.accept(element -> {
+                try {
+                    if (!first[0]) {
+                        writer.write(',');
+                    }
+                    first[0] = false;
+                    writer.write(JSONB.toJson(element));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        writer.write(']');
+        writer.flush();
+    }
+
+}
@@ -1,6 +1,9 @@
 package com.apple.hcl4.controller.util;
 
 import java.net.URISyntaxException;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.Base64;
+import javax.ws.rs.BadRequestException;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.UriBuilder;
@@ -13,6 +16,11 @@ import javax.ws.rs.core.UriBuilder;
  * <a href="https://developer.github.com/v3/#pagination">Github API</a>, and
  * follow <a href="http://tools.ietf.org/html/rfc5988">RFC 5988 (Link
  * header)</a>.
+ *
+ * <p>
+ * Offset pagination uses the {@code page} and {@code size} query parameters.
+ * Keyset pagination uses an opaque {@code cursor} query parameter carrying the
+ * last id of the previous page; an empty cursor starts from the first page.
  */
 public class PaginationUtil {
 
@@ -39,6 +47,66 @@ public class PaginationUtil {
         return builder;
     }
 
+    /**
+     * Generates the pagination headers without the total count, so that the
+     * list endpoints do not have to run a count query. The next link is only
+     * emitted when the current page is full.
+     */
+    public static ResponseBuilder generatePaginationHttpHeaders(ResponseBuilder builder, int page, int size, boolean hasNext, String baseUrl)
+            throws URISyntaxException {
+
+        String link = "";
+        if (hasNext) {
+            link = "<" + generateUri(baseUrl, page + 1, size, false) + ">; rel=\"next\",";
+        }
+        if (page > 0) {
+            link += "<" + generateUri(baseUrl, page - 1, size, false) + ">; rel=\"prev\",";
+        }
+        link += "<" + generateUri(baseUrl, 0, size, false) + ">; rel=\"first\"";
+        builder.header(HttpHeaders.LINK, link);
+        return builder;
+    }
+
+    public static ResponseBuilder generateCursorPaginationHttpHeaders(ResponseBuilder builder, String nextCursor, int size, String baseUrl)
+            throws URISyntaxException {
+
+        String link = "";
+        if (nextCursor != null) {
+            link = "<" + generateCursorUri(baseUrl, nextCursor, size) + ">; rel=\"next\",";
+        }
+        link += "<" + generateCursorUri(baseUrl, "", size) + ">; rel=\"first\"";
+        builder.header(HttpHeaders.LINK, link);
+        return builder;
+    }
+
+    public static String encodeCursor(Object lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.valueOf(lastId).getBytes(UTF_8));
+    }
+
+    /**
+     * @param cursor the opaque cursor received from the client
+     * @return the last id of the previous page, or null if the cursor is empty
+     * @throws BadRequestException if the cursor is malformed
+     */
+    public static Long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(new String(Base64.getUrlDecoder().decode(cursor), UTF_8));
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException("Invalid cursor " + cursor, ex);
+        }
+    }
+
+    private static String generateCursorUri(String baseUrl, String cursor, int size) {
+        UriBuilder builder = UriBuilder.fromPath(baseUrl);
+        builder.queryParam("cursor", cursor);
+        builder.queryParam("size", size);
+        return builder.build().toString();
+    }
+
     private static String generateUri(String baseUrl, int page, int size) throws URISyntaxException {
         UriBuilder builder = UriBuilder.fromPath(baseUrl);
         builder.queryParam("page", page);
@@ -46,4 +114,12 @@ public class PaginationUtil {
         return builder.build().toString();
     }
 
+    private static String generateUri(String baseUrl, int page, int size, boolean total) throws URISyntaxException {
+        UriBuilder builder = UriBuilder.fromPath(baseUrl);
+        builder.queryParam("page", page);
+        builder.queryParam("size", size);
+        builder.queryParam("total", total);
+        return builder.build().toString();
+    }
+
 }
@@ -1,6 +1,7 @@
 package com.apple.hcl4.domain;
 
 import java.io.Serializable;
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
@@ -13,6 +14,7 @@ import javax.validation.constraints.Size;
  */
 @Entity
 @Table(name = "authority")
+@Cacheable
 public class Authority implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -15,6 +15,7 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
+import javax.persistence.TableGenerator;
 import javax.persistence.Version;
 import javax.validation.constraints.NotNull;
 
@@ -29,7 +30,9 @@ public class Continent implements Serializable {
     private static final long serialVersionUID = -1010416464116052776L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "continent_id")
+    @TableGenerator(name = "continent_id", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "continent", allocationSize = 50)
     @Column(name = "id", table = "continent", unique = true, nullable = false, updatable = false)
     private Long id;
 
@@ -15,6 +15,7 @@ import javax.persistence.IdClass;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
+import javax.persistence.TableGenerator;
 import javax.persistence.Version;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
@@ -33,7 +34,9 @@ public class Country implements Serializable {
     private static final long serialVersionUID = 577903537076738324L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "country_id")
+    @TableGenerator(name = "country_id", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "country", allocationSize = 50)
     @Column(name = "id", table = "country", unique = true, nullable = false, updatable = false)
     private Long id;
 
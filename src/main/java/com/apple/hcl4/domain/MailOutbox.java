@@ -0,0 +1,161 @@
+package com.apple.hcl4.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import javax.persistence.TableGenerator;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+/**
+ * An e-mail waiting to be sent.
+ * <p>
+ * The row is written in the transaction of the change that triggers the
+ * e-mail and deleted once the e-mail is sent. The dispatcher claims the due
+ * rows by moving their next attempt date forward, a row claimed by a node
+ * that stopped is due again once the claim expires.
+ * </p>
+ */
+@Entity
+@Table(name = "mail_outbox", indexes = @Index(name = "idx_mail_outbox_due", columnList = "failed, next_attempt_date"))
+@NamedQueries(value = {
+    @NamedQuery(name = "findDueMailOutbox", query = "select m from MailOutbox m where m.failed = false and m.nextAttemptDate <= :now order by m.nextAttemptDate, m.id"),
+    @NamedQuery(name = "countPendingMailOutbox", query = "select count(m) from MailOutbox m where m.failed = false")})
+public class MailOutbox implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "mail_outbox_id")
+    @TableGenerator(name = "mail_outbox_id", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "mail_outbox", allocationSize = 50)
+    private Long id;
+
+    @NotNull
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @NotNull
+    @Size(max = 100)
+    @Column(name = "subject_template", length = 100, nullable = false)
+    private String subjectTemplate;
+
+    @NotNull
+    @Size(max = 100)
+    @Column(name = "content_template", length = 100, nullable = false)
+    private String contentTemplate;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(nullable = false)
+    private boolean failed;
+
+    @NotNull
+    @Column(name = "next_attempt_date", nullable = false)
+    private Instant nextAttemptDate;
+
+    @Column(name = "created_date", updatable = false)
+    private Instant createdDate = Instant.now();
+
+    @Size(max = 255)
+    @Column(name = "last_error", length = 255)
+    private String lastError;
+
+    public MailOutbox() {
+    }
+
+    public MailOutbox(Long userId, String subjectTemplate, String contentTemplate) {
+        this.userId = userId;
+        this.subjectTemplate = subjectTemplate;
+        this.contentTemplate = contentTemplate;
+        this.nextAttemptDate = createdDate;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getSubjectTemplate() {
+        return subjectTemplate;
+    }
+
+    public void setSubjectTemplate(String subjectTemplate) {
+        this.subjectTemplate = subjectTemplate;
+    }
+
+    public String getContentTemplate() {
+        return contentTemplate;
+    }
+
+    public void setContentTemplate(String contentTemplate) {
+        this.contentTemplate = contentTemplate;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public void setFailed(boolean failed) {
+        this.failed = failed;
+    }
+
+    public Instant getNextAttemptDate() {
+        return nextAttemptDate;
+    }
+
+    public void setNextAttemptDate(Instant nextAttemptDate) {
+        this.nextAttemptDate = nextAttemptDate;
+    }
+
+    public Instant getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Instant createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    @Override
+    public String toString() {
+        return "MailOutbox{" + "id=" + id + ", userId=" + userId + ", contentTemplate=" + contentTemplate
+                + ", attempts=" + attempts + ", failed=" + failed + ", nextAttemptDate=" + nextAttemptDate + '}';
+    }
+
+}
@@ -26,14 +26,19 @@ import javax.validation.constraints.Size;
     @NamedQuery(name = "findUserByEmail", query = "select u from User u where u.email = :email"),
     @NamedQuery(name = "findUserByResetKey", query = "select u from User u where u.resetKey = :resetKey"),
     @NamedQuery(name = "findUserByActivationKey", query = "select u from User u where u.activationKey = :activationKey"),
-    @NamedQuery(name = "findUserByUserId", query = "select u from User u where u.id = :id")})
+    @NamedQuery(name = "findUserByUserId", query = "select u from User u where u.id = :id"),
+    @NamedQuery(name = "findUserLoginsByLogins", query = "select u.login from User u where u.login in :logins"),
+    @NamedQuery(name = "findUserEmailsByEmails", query = "select u.email from User u where u.email in :emails"),
+    @NamedQuery(name = "findAuthorityNamesByUserIds", query = "select u.id, a.name from User u join u.authorities a where u.id in :ids")})
 @NamedEntityGraph(name = "graph.user.authorities", attributeNodes = @NamedAttributeNode("authorities"))
 public class User extends AbstractAuditingEntity implements Serializable {
 
     private static final long serialVersionUID = -154847285496114960L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "account_id")
+    @TableGenerator(name = "account_id", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "account", allocationSize = 50)
     private Long id;
 
     @NotNull
@@ -44,8 +49,8 @@ public class User extends AbstractAuditingEntity implements Serializable {
 
     @JsonbTransient
     @NotNull
-    @Size(min = 32, max = 32)
-    @Column(name = "password_hash", length = 32)
+    @Size(min = 32, max = 128)
+    @Column(name = "password_hash", length = 128)
     private String password;
 
     @Size(max = 50)
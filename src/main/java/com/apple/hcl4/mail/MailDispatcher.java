@@ -0,0 +1,286 @@
+package com.apple.hcl4.mail;
+
+import com.apple.hcl4.config.MailConfig;
+import com.apple.hcl4.domain.MailOutbox;
+import com.apple.hcl4.domain.User;
+import com.apple.hcl4.repository.MailOutboxRepository;
+import com.apple.hcl4.repository.UserRepository;
+import java.time.Instant;
+import static java.util.Collections.singletonList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.context.control.RequestContextController;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.ObservesAsync;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import javax.mail.MessagingException;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Meter;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.Timer;
+import org.slf4j.Logger;
+
+/**
+ * Sends the e-mails of the mail outbox in the background.
+ * <p>
+ * Every {@code service.mail.outbox.intervalInMillis} the due e-mails are
+ * claimed by batches of {@code service.mail.outbox.batch.size} and each batch
+ * is sent over a connection of the {@link SmtpTransportPool}. A sent e-mail
+ * is deleted, a failed one is retried with an exponential backoff and marked
+ * as failed after {@code service.mail.outbox.retry.max} attempts. The
+ * e-mails announced by a {@link MailEvent} are sent at once on the
+ * {@link MailExecutor}, the outbox runs pick up the ones it rejected. The
+ * e-mails over the {@link MailRateLimiter} limits are deferred without
+ * counting as an attempt. Once a domain is over its limit the other e-mails
+ * to that domain are deferred for the rest of the run, once the global limit
+ * is reached the run ends. When the pool has no connection left the batch is
+ * handed back to the next run, without counting as an attempt either.
+ * </p>
+ * <p>
+ * The outbox is exported as the {@code MailDispatcher.queueDepth} gauge,
+ * updated on each run, the send latency as the {@code MailDispatcher.send}
+ * timer and the outcomes as the {@code MailDispatcher.sent},
+ * {@code MailDispatcher.retried} and {@code MailDispatcher.failed} meters.
+ * </p>
+ */
+@ApplicationScoped
+public class MailDispatcher {
+
+    private static final String MAIL_DISPATCHER = "MailDispatcher.";
+
+    private static final int MAX_BACKOFF_SHIFT = 16;
+
+    private static final int MAX_ERROR_LENGTH = 255;
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private MailConfig mailConfig;
+
+    @Inject
+    private MailNotifier mailNotifier;
+
+    @Inject
+    private SmtpTransportPool transportPool;
+
+    @Inject
+    private MailRateLimiter rateLimiter;
+
+    @Inject
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Inject
+    private UserRepository userRepository;
+
+    @Inject
+    private MetricRegistry registry;
+
+    @Inject
+    private Instance<RequestContextController> requestContextControllers;
+
+    @Resource(lookup = "java:app/concurrent/mailScheduler")
+    private ManagedScheduledExecutorService scheduler;
+
+    private final AtomicLong queueDepth = new AtomicLong();
+
+    private ScheduledFuture<?> schedule;
+
+    private Timer sendTimer;
+
+    private Meter sent;
+
+    private Meter retried;
+
+    private Meter failed;
+
+    public void onStartup(@Observes @Initialized(ApplicationScoped.class) Object init) {
+        if (!mailConfig.isEnable()) {
+            log.debug("Mail service is not enabled, the outbox is not dispatched");
+            return;
+        }
+        sendTimer = registry.timer(MAIL_DISPATCHER + "send");
+        sent = registry.meter(MAIL_DISPATCHER + "sent");
+        retried = registry.meter(MAIL_DISPATCHER + "retried");
+        failed = registry.meter(MAIL_DISPATCHER + "failed");
+        registry.register(Metadata.builder().withName(MAIL_DISPATCHER + "queueDepth").withType(MetricType.GAUGE).build(),
+                (Gauge<Long>) queueDepth::get);
+        long interval = mailConfig.getOutboxInterval();
+        schedule = scheduler.scheduleWithFixedDelay(this::run, interval, interval, MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (schedule != null) {
+            schedule.cancel(false);
+        }
+    }
+
+    /**
+     * Sends the newly queued e-mail, unless an outbox run already claimed it.
+     */
+    public void onMailQueued(@ObservesAsync MailEvent event) {
+        inRequestContext(() -> {
+            Instant now = Instant.now();
+            mailOutboxRepository.claim(event.getMailId(), now, now.plusSeconds(mailConfig.getOutboxClaim()))
+                    .ifPresent(mail -> send(singletonList(mail), new Deferrals()));
+        });
+    }
+
+    private void run() {
+        inRequestContext(this::dispatch);
+    }
+
+    private void inRequestContext(Runnable action) {
+        // the repositories rely on the request scoped EntityManager
+        RequestContextController requestContextController = requestContextControllers.get();
+        boolean activated = requestContextController.activate();
+        try {
+            action.run();
+        } catch (RuntimeException ex) {
+            log.warn("Mail outbox dispatch failed", ex);
+        } finally {
+            if (activated) {
+                requestContextController.deactivate();
+            }
+            requestContextControllers.destroy(requestContextController);
+        }
+    }
+
+    /**
+     * Sends the due e-mails until the outbox has none left.
+     */
+    void dispatch() {
+        int batchSize = mailConfig.getOutboxBatchSize();
+        Deferrals deferrals = new Deferrals();
+        List<MailOutbox> batch;
+        do {
+            Instant now = Instant.now();
+            batch = mailOutboxRepository.claimDue(now, now.plusSeconds(mailConfig.getOutboxClaim()), batchSize);
+            if (!batch.isEmpty()) {
+                send(batch, deferrals);
+            }
+            // over the global rate limit the next batches would only be deferred too
+        } while (batch.size() == batchSize && deferrals.global == null);
+        queueDepth.set(mailOutboxRepository.countPending());
+    }
+
+    private void send(List<MailOutbox> batch, Deferrals deferrals) {
+        PooledTransport transport;
+        try {
+            transport = transportPool.borrow();
+        } catch (SmtpTransportPool.PoolExhaustedException ex) {
+            log.debug("{}, {} e-mails handed back to the next run", ex.getMessage(), batch.size());
+            Instant now = Instant.now();
+            batch.forEach(mail -> {
+                mail.setNextAttemptDate(now);
+                mailOutboxRepository.edit(mail);
+            });
+            // the next batches would not get a connection either
+            deferrals.global = now;
+            return;
+        } catch (MessagingException ex) {
+            log.warn("SMTP connection failed, {} e-mails rescheduled: {}", batch.size(), ex.getMessage());
+            batch.forEach(mail -> retry(mail, ex));
+            return;
+        }
+        try {
+            for (MailOutbox mail : batch) {
+                send(transport, mail, deferrals);
+            }
+        } finally {
+            transportPool.release(transport);
+        }
+    }
+
+    private void send(PooledTransport transport, MailOutbox mail, Deferrals deferrals) {
+        User user = userRepository.find(mail.getUserId());
+        if (user == null) {
+            log.debug("User {} no longer exists, e-mail dropped", mail.getUserId());
+            mailOutboxRepository.remove(mail);
+            return;
+        }
+        Instant deferredUntil = deferrals.get(user.getEmail());
+        if (deferredUntil == null) {
+            MailRateLimiter.Decision decision = rateLimiter.tryAcquire(user.getEmail());
+            if (!decision.isPermitted()) {
+                deferredUntil = deferrals.add(user.getEmail(), decision);
+            }
+        }
+        if (deferredUntil != null) {
+            mail.setNextAttemptDate(deferredUntil);
+            mailOutboxRepository.edit(mail);
+            return;
+        }
+        Timer.Context context = sendTimer.time();
+        try {
+            mailNotifier.send(transport, user, mail.getSubjectTemplate(), mail.getContentTemplate());
+            context.stop();
+            sent.mark();
+            mailOutboxRepository.remove(mail);
+        } catch (Exception ex) {
+            context.stop();
+            log.warn("e-mail could not be sent to user '{}', exception is: {}", user.getEmail(), ex.getMessage());
+            retry(mail, ex);
+        }
+    }
+
+    private void retry(MailOutbox mail, Exception cause) {
+        int attempts = mail.getAttempts() + 1;
+        mail.setAttempts(attempts);
+        mail.setLastError(StringUtils.left(cause.getMessage(), MAX_ERROR_LENGTH));
+        if (attempts >= mailConfig.getOutboxRetryMax()) {
+            mail.setFailed(true);
+            failed.mark();
+        } else {
+            long delay = mailConfig.getOutboxRetryDelay() << Math.min(attempts - 1, MAX_BACKOFF_SHIFT);
+            mail.setNextAttemptDate(Instant.now().plusSeconds(delay));
+            retried.mark();
+        }
+        mailOutboxRepository.edit(mail);
+    }
+
+    /**
+     * Deferrals of a run : the e-mails to a domain over its limit, or all of
+     * them once the global limit is reached or the pool is exhausted, are
+     * deferred without asking the rate limiter again.
+     */
+    private static final class Deferrals {
+
+        private Instant global;
+
+        private final Map<String, Instant> domains = new HashMap<>();
+
+        /**
+         * @return the time the e-mails to the address are deferred to, or null
+         * if they may be sent
+         */
+        private Instant get(String email) {
+            return global != null ? global : domains.get(MailRateLimiter.getDomain(email));
+        }
+
+        private Instant add(String email, MailRateLimiter.Decision decision) {
+            Instant deferredUntil = Instant.now().plusMillis(decision.getDelay());
+            if (decision.isGlobal()) {
+                global = deferredUntil;
+            } else {
+                domains.put(MailRateLimiter.getDomain(email), deferredUntil);
+            }
+            return deferredUntil;
+        }
+    }
+
+}
@@ -1,29 +1,19 @@
 package com.apple.hcl4.mail;
 
-import com.apple.hcl4.domain.User;
-
+/**
+ * Event fired once an e-mail of the mail outbox is committed, to send it
+ * without waiting for the next outbox run.
+ */
 public class MailEvent {
 
-    private final User user;
-    private final String subjectTemplate;
-    private final String contentTemplate;
-
-    public MailEvent(User user, String subjectTemplate, String contentTemplate) {
-        this.user = user;
-        this.subjectTemplate = subjectTemplate;
-        this.contentTemplate = contentTemplate;
-    }
-
-    public User getUser() {
-        return user;
-    }
+    private final Long mailId;
 
-    public String getSubjectTemplate() {
-        return subjectTemplate;
+    public MailEvent(Long mailId) {
+        this.mailId = mailId;
     }
 
-    public String getContentTemplate() {
-        return contentTemplate;
+    public Long getMailId() {
+        return mailId;
     }
 
 }
@@ -0,0 +1,84 @@
+package com.apple.hcl4.mail;
+
+import com.apple.hcl4.config.MailConfig;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Meter;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+
+/**
+ * Executor of the asynchronous {@link MailEvent} observers.
+ * <p>
+ * The observers run on {@code service.mail.executor.threads} threads of their
+ * own, with at most {@code service.mail.executor.queue.size} waiting events,
+ * instead of the container default async pool. An event beyond them is
+ * rejected at once, the e-mail stays in the mail outbox for the next
+ * {@link MailDispatcher} run, so that a burst of e-mails never blocks the
+ * request path. The threads and the queue are exported as the
+ * {@code MailExecutor.active} and {@code MailExecutor.queueSize} gauges, the
+ * rejections as the {@code MailExecutor.rejected} meter.
+ * </p>
+ */
+@ApplicationScoped
+public class MailExecutor implements Executor {
+
+    private static final String MAIL_EXECUTOR = "MailExecutor.";
+
+    @Inject
+    private MailConfig mailConfig;
+
+    @Inject
+    private MetricRegistry registry;
+
+    @Resource
+    private ManagedThreadFactory threadFactory;
+
+    private ThreadPoolExecutor executor;
+
+    private Meter rejected;
+
+    @PostConstruct
+    public void init() {
+        int threads = mailConfig.getExecutorThreads();
+        executor = new ThreadPoolExecutor(threads, threads, 60, SECONDS,
+                new ArrayBlockingQueue<>(Math.max(mailConfig.getExecutorQueueSize(), 1)), threadFactory);
+        rejected = registry.meter(MAIL_EXECUTOR + "rejected");
+        registerGauge(MAIL_EXECUTOR + "active", executor::getActiveCount);
+        registerGauge(MAIL_EXECUTOR + "queueSize", () -> executor.getQueue().size());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @throws RejectedExecutionException if the queue is full
+     */
+    @Override
+    public void execute(Runnable command) {
+        try {
+            executor.execute(command);
+        } catch (RejectedExecutionException ex) {
+            rejected.mark();
+            throw ex;
+        }
+    }
+
+    private void registerGauge(String name, Gauge<Integer> gauge) {
+        registry.register(Metadata.builder().withName(name).withType(MetricType.GAUGE).build(), gauge);
+    }
+
+}
@@ -0,0 +1,199 @@
+package com.apple.hcl4.mail;
+
+import com.apple.hcl4.config.MailConfig;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.eclipse.microprofile.metrics.Meter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.slf4j.Logger;
+
+/**
+ * Token bucket rate limits of the e-mails sent to the SMTP relay.
+ * <p>
+ * An e-mail takes a token from the bucket of its recipient domain, limited
+ * to {@code service.mail.rate.domain} e-mails per second unless overridden in
+ * {@code service.mail.rate.domains}, and from the global bucket, limited to
+ * {@code service.mail.rate.global} e-mails per second. A rate of 0 disables
+ * the limit. The e-mails over a limit are deferred by the caller for the
+ * returned delay. The buckets of the {@value #MAX_DOMAINS} most recently used
+ * domains are kept, a bucket dropped since is recreated full.
+ * </p>
+ * <p>
+ * The decisions are exported as the {@code MailRateLimiter.permitted},
+ * {@code MailRateLimiter.deferred.global} and
+ * {@code MailRateLimiter.deferred.domain} meters, and per overridden domain
+ * as {@code MailRateLimiter.deferred.domain.<domain>}.
+ * </p>
+ */
+@ApplicationScoped
+public class MailRateLimiter {
+
+    private static final String MAIL_RATE_LIMITER = "MailRateLimiter.";
+
+    private static final int MAX_DOMAINS = 10000;
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private MailConfig mailConfig;
+
+    @Inject
+    private MetricRegistry registry;
+
+    private TokenBucket globalBucket;
+
+    private final Map<String, Double> domainRates = new HashMap<>();
+
+    private final Map<String, TokenBucket> domainBuckets = new LinkedHashMap<String, TokenBucket>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TokenBucket> eldest) {
+            return size() > MAX_DOMAINS;
+        }
+    };
+
+    private final ConcurrentMap<String, Meter> domainDeferred = new ConcurrentHashMap<>();
+
+    private Meter permitted;
+
+    private Meter deferredGlobal;
+
+    private Meter deferredDomain;
+
+    @PostConstruct
+    public void init() {
+        double globalRate = mailConfig.getRateGlobal();
+        if (globalRate > 0) {
+            globalBucket = new TokenBucket(globalRate, mailConfig.getRateGlobalBurst(), System.nanoTime());
+        }
+        mailConfig.getRateDomains().ifPresent(domains -> {
+            for (String entry : domains.split(",")) {
+                String[] pair = entry.split("=");
+                if (pair.length != 2) {
+                    log.warn("Ignored mail rate limit '{}', expected <domain>=<e-mails per second>", entry);
+                    continue;
+                }
+                String domain = pair[0].trim().toLowerCase(Locale.ROOT);
+                try {
+                    domainRates.put(domain, Double.valueOf(pair[1].trim()));
+                } catch (NumberFormatException ex) {
+                    log.warn("Ignored mail rate limit '{}', expected <domain>=<e-mails per second>", entry);
+                    continue;
+                }
+                domainDeferred.put(domain, registry.meter(MAIL_RATE_LIMITER + "deferred.domain." + domain));
+            }
+        });
+        permitted = registry.meter(MAIL_RATE_LIMITER + "permitted");
+        deferredGlobal = registry.meter(MAIL_RATE_LIMITER + "deferred.global");
+        deferredDomain = registry.meter(MAIL_RATE_LIMITER + "deferred.domain");
+    }
+
+    /**
+     * Takes the tokens to send an e-mail to the recipient.
+     *
+     * @param email the recipient address
+     * @return the decision, with the delay after which the e-mail should be
+     * tried again if it is deferred
+     */
+    public Decision tryAcquire(String email) {
+        long now = System.nanoTime();
+        String domain = getDomain(email);
+        TokenBucket domainBucket = getDomainBucket(domain, now);
+        if (domainBucket != null) {
+            long wait = domainBucket.tryAcquire(now);
+            if (wait > 0) {
+                deferredDomain.mark();
+                Meter meter = domainDeferred.get(domain);
+                if (meter != null) {
+                    meter.mark();
+                }
+                return new Decision(toMillis(wait), false);
+            }
+        }
+        if (globalBucket != null) {
+            long wait = globalBucket.tryAcquire(now);
+            if (wait > 0) {
+                if (domainBucket != null) {
+                    domainBucket.refund();
+                }
+                deferredGlobal.mark();
+                return new Decision(toMillis(wait), true);
+            }
+        }
+        permitted.mark();
+        return Decision.PERMITTED;
+    }
+
+    private TokenBucket getDomainBucket(String domain, long now) {
+        double rate = domainRates.getOrDefault(domain, mailConfig.getRateDomain());
+        if (rate <= 0) {
+            return null;
+        }
+        synchronized (domainBuckets) {
+            return domainBuckets.computeIfAbsent(domain,
+                    key -> new TokenBucket(rate, mailConfig.getRateDomainBurst(), now));
+        }
+    }
+
+    /**
+     * @return the lower-cased domain of the address, the key of its bucket
+     */
+    static String getDomain(String email) {
+        int at = email == null ? -1 : email.lastIndexOf('@');
+        return at < 0 ? "" : email.substring(at + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static long toMillis(long nanos) {
+        return Math.max(NANOSECONDS.toMillis(nanos), 1);
+    }
+
+    /**
+     * Outcome of {@link #tryAcquire(String)}.
+     */
+    public static final class Decision {
+
+        static final Decision PERMITTED = new Decision(0, false);
+
+        private final long delay;
+
+        private final boolean global;
+
+        Decision(long delay, boolean global) {
+            this.delay = delay;
+            this.global = global;
+        }
+
+        public boolean isPermitted() {
+            return delay == 0;
+        }
+
+        /**
+         * @return the delay in milliseconds after which a deferred e-mail
+         * should be tried again, 0 if it is permitted
+         */
+        public long getDelay() {
+            return delay;
+        }
+
+        /**
+         * @return true if the e-mail is deferred by the global limit, any
+         * other e-mail would be deferred too, false if only its domain is
+         * over the limit
+         */
+        public boolean isGlobal() {
+            return global;
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.apple.hcl4.mail;
+
+import com.apple.hcl4.config.MailConfig;
+import com.apple.hcl4.domain.User;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+
+/**
+ * Renders the mail subjects and contents.
+ * <p>
+ * Each {@code mails/*.html} template is parsed once and the localized
+ * messages are resolved once per language, the rendering only merges the
+ * cached template into a per-thread buffer.
+ * </p>
+ */
+@ApplicationScoped
+public class MailTemplateRenderer {
+
+    private static final String MESSAGES = "i18n.messages";
+    private static final String DEFAULT_LANG_KEY = "en";
+    private static final String USER = "user";
+    private static final String BASE_URL = "baseUrl";
+    private static final String PROPS = "props";
+    private static final int INITIAL_BUFFER_SIZE = 2048;
+    private static final int MAX_BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<StringWriter> BUFFER = ThreadLocal.withInitial(() -> new StringWriter(INITIAL_BUFFER_SIZE));
+
+    @Inject
+    private VelocityEngine engine;
+
+    @Inject
+    private MailConfig mailConfig;
+
+    private final ConcurrentMap<String, Template> templates = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Function<String, String>> messages = new ConcurrentHashMap<>();
+
+    /**
+     * @return the localized subject for the language of the user
+     */
+    public String renderSubject(User user, String subjectTemplate) {
+        return getMessages(user.getLangKey()).apply(subjectTemplate);
+    }
+
+    /**
+     * @return the content template rendered for the user
+     */
+    public String renderContent(User user, String contentTemplate) {
+        VelocityContext context = new VelocityContext();
+        context.put(USER, user);
+        context.put(BASE_URL, mailConfig.getBaseUrl());
+        context.put(PROPS, getMessages(user.getLangKey()));
+        StringWriter writer = BUFFER.get();
+        StringBuffer buffer = writer.getBuffer();
+        buffer.setLength(0);
+        getTemplate(contentTemplate).merge(context, writer);
+        String content = writer.toString();
+        if (buffer.capacity() > MAX_BUFFER_SIZE) {
+            // an oversized e-mail must not pin its buffer to the thread
+            BUFFER.remove();
+        }
+        return content;
+    }
+
+    private Template getTemplate(String contentTemplate) {
+        return templates.computeIfAbsent(contentTemplate,
+                name -> engine.getTemplate(String.format("mails/%s.html", name)));
+    }
+
+    private Function<String, String> getMessages(String langKey) {
+        return messages.computeIfAbsent(langKey != null ? langKey : DEFAULT_LANG_KEY, this::loadMessages);
+    }
+
+    private Function<String, String> loadMessages(String langKey) {
+        ResourceBundle bundle = ResourceBundle.getBundle(MESSAGES, Locale.forLanguageTag(langKey),
+                MailTemplateRenderer.class.getClassLoader());
+        Map<String, String> resolved = new HashMap<>();
+        for (String key : Collections.list(bundle.getKeys())) {
+            resolved.put(key, bundle.getString(key));
+        }
+        // same placeholder as the DeltaSpike messages for a missing key
+        return key -> resolved.getOrDefault(key, "??" + key + "??");
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.apple.hcl4.mail;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Transport;
+
+/**
+ * A connected SMTP transport of the {@link SmtpTransportPool}, with the usage
+ * statistics driving its eviction.
+ */
+class PooledTransport {
+
+    private final Transport transport;
+
+    private int messageCount;
+
+    private long lastUsed = System.nanoTime();
+
+    private boolean broken;
+
+    PooledTransport(Transport transport) {
+        this.transport = transport;
+    }
+
+    void sendMessage(Message message) throws MessagingException {
+        lastUsed = System.nanoTime();
+        try {
+            transport.sendMessage(message, message.getAllRecipients());
+        } catch (SendFailedException ex) {
+            // rejected by the server, the connection is still usable
+            throw ex;
+        } catch (MessagingException ex) {
+            broken = true;
+            throw ex;
+        }
+        messageCount++;
+    }
+
+    /**
+     * Sends a NOOP to the server when the transport is connected.
+     */
+    boolean isConnected() {
+        return transport.isConnected();
+    }
+
+    /**
+     * @return true if a send failed on the connection rather than being
+     * rejected by the server
+     */
+    boolean isBroken() {
+        return broken;
+    }
+
+    int getMessageCount() {
+        return messageCount;
+    }
+
+    long getIdleNanos(long now) {
+        return now - lastUsed;
+    }
+
+    void touch() {
+        lastUsed = System.nanoTime();
+    }
+
+    void close() {
+        try {
+            transport.close();
+        } catch (MessagingException ex) {
+            // the connection is dropped anyway
+        }
+    }
+
+}
@@ -0,0 +1,231 @@
+package com.apple.hcl4.mail;
+
+import com.apple.hcl4.config.MailConfig;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ScheduledFuture;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import org.apache.commons.mail.DefaultAuthenticator;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Meter;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.slf4j.Logger;
+
+/**
+ * Pool of authenticated SMTP connections.
+ * <p>
+ * At most {@code service.mail.pool.size} connections are open, borrowed or
+ * idle. A connection sends up to {@code service.mail.pool.maxMessages}
+ * e-mails before it is replaced, an idle one is checked with a NOOP before
+ * being borrowed again and closed after
+ * {@code service.mail.pool.idleInSeconds} without use, so that the
+ * connection, STARTTLS and authentication costs are paid once for many
+ * e-mails.
+ * </p>
+ * <p>
+ * The pool is exported as the {@code SmtpTransportPool.active} and
+ * {@code SmtpTransportPool.idle} gauges and the {@code SmtpTransportPool.created}
+ * and {@code SmtpTransportPool.evicted} meters.
+ * </p>
+ */
+@ApplicationScoped
+public class SmtpTransportPool {
+
+    private static final String SMTP_TRANSPORT_POOL = "SmtpTransportPool.";
+    private static final String SMTP_TIMEOUT = "10000";
+    private static final long VALIDATE_AFTER_NANOS = SECONDS.toNanos(5);
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private MailConfig mailConfig;
+
+    @Inject
+    private MetricRegistry registry;
+
+    @Resource(lookup = "java:app/concurrent/mailScheduler")
+    private ManagedScheduledExecutorService scheduler;
+
+    private final Deque<PooledTransport> idle = new ArrayDeque<>();
+
+    private Session session;
+
+    private Semaphore permits;
+
+    private ScheduledFuture<?> eviction;
+
+    private Meter created;
+
+    private Meter evicted;
+
+    @PostConstruct
+    public void init() {
+        Properties properties = new Properties();
+        properties.setProperty("mail.transport.protocol", "smtp");
+        properties.setProperty("mail.smtp.host", mailConfig.getHost());
+        properties.setProperty("mail.smtp.port", String.valueOf(mailConfig.getPort()));
+        properties.setProperty("mail.smtp.starttls.enable", String.valueOf(mailConfig.isStartTls()));
+        properties.setProperty("mail.smtp.auth", String.valueOf(mailConfig.isAuthEnable()));
+        properties.setProperty("mail.smtp.connectiontimeout", SMTP_TIMEOUT);
+        properties.setProperty("mail.smtp.timeout", SMTP_TIMEOUT);
+        properties.setProperty("mail.smtp.writetimeout", SMTP_TIMEOUT);
+        session = mailConfig.isAuthEnable()
+                ? Session.getInstance(properties, new DefaultAuthenticator(mailConfig.getUsername(), mailConfig.getPassword()))
+                : Session.getInstance(properties);
+        int size = mailConfig.getPoolSize();
+        permits = new Semaphore(size, true);
+        created = registry.meter(SMTP_TRANSPORT_POOL + "created");
+        evicted = registry.meter(SMTP_TRANSPORT_POOL + "evicted");
+        registerGauge(SMTP_TRANSPORT_POOL + "active", () -> size - permits.availablePermits());
+        registerGauge(SMTP_TRANSPORT_POOL + "idle", () -> {
+            synchronized (idle) {
+                return idle.size();
+            }
+        });
+        long idleTimeout = mailConfig.getPoolIdleTimeout();
+        eviction = scheduler.scheduleWithFixedDelay(this::evictIdle, idleTimeout, idleTimeout, SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        eviction.cancel(false);
+        synchronized (idle) {
+            idle.forEach(PooledTransport::close);
+            idle.clear();
+        }
+    }
+
+    /**
+     * @return the mail session of the pooled connections
+     */
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * Borrows a connection, waiting up to
+     * {@code service.mail.pool.timeoutInMillis} when they are all in use. The
+     * connection must be handed back with {@link #release(PooledTransport)}.
+     *
+     * @throws PoolExhaustedException if all the connections stayed in use
+     * @throws MessagingException if no connection could be established
+     */
+    PooledTransport borrow() throws MessagingException {
+        try {
+            if (!permits.tryAcquire(mailConfig.getPoolTimeout(), MILLISECONDS)) {
+                throw new PoolExhaustedException("No SMTP connection available", null);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new PoolExhaustedException("Interrupted while waiting for an SMTP connection", ex);
+        }
+        try {
+            PooledTransport transport;
+            while ((transport = pollIdle()) != null) {
+                if (transport.getIdleNanos(System.nanoTime()) < VALIDATE_AFTER_NANOS || transport.isConnected()) {
+                    return transport;
+                }
+                evict(transport);
+            }
+            return connect();
+        } catch (MessagingException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Hands the connection back, it is kept for the next borrower unless a
+     * send failed on it or it has sent its share of e-mails. It is not checked
+     * with a NOOP here, an idle one is checked when borrowed.
+     */
+    void release(PooledTransport transport) {
+        try {
+            if (transport.isBroken() || transport.getMessageCount() >= mailConfig.getPoolMaxMessages()) {
+                evict(transport);
+            } else {
+                transport.touch();
+                synchronized (idle) {
+                    idle.push(transport);
+                }
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private PooledTransport pollIdle() {
+        synchronized (idle) {
+            // the most recently used connection is the most likely to be alive
+            return idle.pollFirst();
+        }
+    }
+
+    private PooledTransport connect() throws MessagingException {
+        Transport transport = session.getTransport();
+        transport.connect();
+        created.mark();
+        log.debug("Opened SMTP connection to {}:{}", mailConfig.getHost(), mailConfig.getPort());
+        return new PooledTransport(transport);
+    }
+
+    private void evict(PooledTransport transport) {
+        transport.close();
+        evicted.mark();
+    }
+
+    private void evictIdle() {
+        long now = System.nanoTime();
+        long idleTimeout = SECONDS.toNanos(mailConfig.getPoolIdleTimeout());
+        List<PooledTransport> expired = new ArrayList<>();
+        synchronized (idle) {
+            for (Iterator<PooledTransport> it = idle.iterator(); it.hasNext();) {
+                PooledTransport transport = it.next();
+                if (transport.getIdleNanos(now) >= idleTimeout) {
+                    it.remove();
+                    expired.add(transport);
+                }
+            }
+        }
+        expired.forEach(this::evict);
+        if (!expired.isEmpty()) {
+            log.debug("Closed {} idle SMTP connections", expired.size());
+        }
+    }
+
+    private void registerGauge(String name, Gauge<Integer> gauge) {
+        registry.register(Metadata.builder().withName(name).withType(MetricType.GAUGE).build(), gauge);
+    }
+
+    /**
+     * Thrown when no connection was handed back in time, the relay was not
+     * reached so the e-mails are not at fault.
+     */
+    static class PoolExhaustedException extends MessagingException {
+
+        private static final long serialVersionUID = 1L;
+
+        PoolExhaustedException(String message, Exception cause) {
+            super(message, cause);
+        }
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.apple.hcl4.mail;
+
+/**
+ * Token bucket refilled continuously at a fixed rate up to its burst size.
+ */
+class TokenBucket {
+
+    private final double capacity;
+
+    private final double tokensPerNano;
+
+    private double tokens;
+
+    private long lastRefill;
+
+    TokenBucket(double ratePerSecond, double burst, long now) {
+        this.capacity = Math.max(burst, 1);
+        this.tokensPerNano = ratePerSecond / 1e9;
+        this.tokens = capacity;
+        this.lastRefill = now;
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @param now the current {@link System#nanoTime()}
+     * @return 0 if a token was taken, otherwise the nanoseconds until the
+     * next token
+     */
+    synchronized long tryAcquire(long now) {
+        refill(now);
+        if (tokens >= 1) {
+            tokens--;
+            return 0;
+        }
+        return Math.max((long) Math.ceil((1 - tokens) / tokensPerNano), 1);
+    }
+
+    /**
+     * Gives back a token taken for a send that did not happen.
+     */
+    synchronized void refund() {
+        tokens = Math.min(tokens + 1, capacity);
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+
+}
@@ -1,15 +1,55 @@
 package com.apple.hcl4.metrics;
 
+import com.apple.hcl4.config.MetricsConfig;
 import org.slf4j.Logger;
 import javax.inject.Inject;
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.ext.Provider;
 import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import javax.ws.rs.Path;
+import org.eclipse.microprofile.metrics.Counter;
 import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Timer;
 
+/**
+ * Counts and times the JAX-RS requests per matched resource method.
+ * <p>
+ * The metrics are keyed by the resource method ({@code
+ * DiagnosticFilter.UserController.getUser.*}) and never by the request path,
+ * so path parameters do not create new series. The number of distinct routes
+ * is capped by {@code service.metrics.routes.max}, the requests of the routes
+ * beyond the cap and the unmatched requests share the {@code other} and
+ * {@code unmatched} routes.
+ * </p>
+ */
 @Provider
-public class DiagnosticFilter implements ContainerRequestFilter {
+public class DiagnosticFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    /**
+     * Request attribute holding the route name of the matched resource method.
+     */
+    public static final String ROUTE_ATTRIBUTE = DiagnosticFilter.class.getName() + ".routeName";
+
+    /**
+     * Route name of the requests which did not match any resource method.
+     */
+    public static final String UNMATCHED_ROUTE = "unmatched";
+
+    private static final String DIAGNOSTIC_FILTER = "DiagnosticFilter.";
+    private static final String OTHER_ROUTE = "other";
+    private static final String START_PROPERTY = DiagnosticFilter.class.getName() + ".start";
+    private static final String ROUTE_PROPERTY = DiagnosticFilter.class.getName() + ".route";
+
+    private static final ConcurrentMap<Method, Route> ROUTES = new ConcurrentHashMap<>();
 
     @Inject
     private Logger log;
@@ -17,11 +57,90 @@ public class DiagnosticFilter implements ContainerRequestFilter {
     @Inject
     private MetricRegistry metricRegistry;
 
+    @Inject
+    private MetricsConfig metricsConfig;
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        Route route = getRoute(resourceInfo.getResourceMethod());
+        requestContext.setProperty(ROUTE_PROPERTY, route);
+        requestContext.setProperty(ROUTE_ATTRIBUTE, route.name);
+        requestContext.setProperty(START_PROPERTY, System.nanoTime());
+        route.counter.inc();
+        if (log.isDebugEnabled()) {
+            log.debug("Invoking request {} {} on {}", requestContext.getMethod(), route.template, route.name);
+        }
+    }
+
     @Override
-    public void filter(ContainerRequestContext containerRequestContext) throws IOException {
-        String path = containerRequestContext.getUriInfo().getAbsolutePath().getPath();
-        log.info("Invoking request {}", path);
-        metricRegistry.counter(path).inc();
-        log.info("Finished request {}", path);
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) throws IOException {
+        Route route = (Route) requestContext.getProperty(ROUTE_PROPERTY);
+        Long start = (Long) requestContext.getProperty(START_PROPERTY);
+        if (route == null || start == null) {
+            // the request was aborted before being matched
+            return;
+        }
+        long duration = System.nanoTime() - start;
+        route.timer.update(duration, NANOSECONDS);
+        if (log.isDebugEnabled()) {
+            log.debug("Finished request {} {} with status {} in {} ms", requestContext.getMethod(), route.template,
+                    responseContext.getStatus(), NANOSECONDS.toMillis(duration));
+        }
+    }
+
+    private Route getRoute(Method method) {
+        if (method == null) {
+            return newRoute(UNMATCHED_ROUTE, UNMATCHED_ROUTE);
+        }
+        Route route = ROUTES.get(method);
+        if (route != null) {
+            return route;
+        }
+        if (ROUTES.size() >= metricsConfig.getMaxRoutes()) {
+            return newRoute(OTHER_ROUTE, OTHER_ROUTE);
+        }
+        return ROUTES.computeIfAbsent(method,
+                key -> newRoute(resourceInfo.getResourceClass().getSimpleName() + '.' + key.getName(), getTemplate(key)));
+    }
+
+    private Route newRoute(String name, String template) {
+        return new Route(name, template,
+                metricRegistry.counter(DIAGNOSTIC_FILTER + name + ".requests"),
+                metricRegistry.timer(DIAGNOSTIC_FILTER + name + ".duration"));
+    }
+
+    private String getTemplate(Method method) {
+        StringBuilder template = new StringBuilder();
+        Path classPath = resourceInfo.getResourceClass().getAnnotation(Path.class);
+        if (classPath != null) {
+            template.append(classPath.value());
+        }
+        Path methodPath = method.getAnnotation(Path.class);
+        if (methodPath != null) {
+            if (template.length() > 0 && template.charAt(template.length() - 1) != '/'
+                    && !methodPath.value().startsWith("/")) {
+                template.append('/');
+            }
+            template.append(methodPath.value());
+        }
+        return template.toString();
+    }
+
+    private static class Route {
+
+        private final String name;
+        private final String template;
+        private final Counter counter;
+        private final Timer timer;
+
+        private Route(String name, String template, Counter counter, Timer timer) {
+            this.name = name;
+            this.template = template;
+            this.counter = counter;
+            this.timer = timer;
+        }
     }
 }
@@ -1,5 +1,8 @@
 package com.apple.hcl4.metrics;
 
+import com.apple.hcl4.config.MetricsConfig;
+import static com.apple.hcl4.metrics.DiagnosticFilter.ROUTE_ATTRIBUTE;
+import static com.apple.hcl4.metrics.DiagnosticFilter.UNMATCHED_ROUTE;
 import java.io.IOException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -14,14 +17,23 @@ import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletResponse;
 import org.eclipse.microprofile.metrics.ConcurrentGauge;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Metadata;
 import org.eclipse.microprofile.metrics.Meter;
 import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.MetricUnits;
 import org.eclipse.microprofile.metrics.Timer;
 
 public class InstrumentedFilter implements Filter {
 
     @Inject
     private MetricRegistry registry;
+
+    @Inject
+    private MetricsConfig metricsConfig;
+
+    private ConcurrentMap<String, LatencyHistogram> latencyHistograms;
     private ConcurrentMap<Integer, Meter> statusCodeMeters;
     private Meter otherMeter;
     private Meter timeoutsMeter;
@@ -45,10 +57,14 @@ public class InstrumentedFilter implements Filter {
     private static final String NOT_FOUND_METRICS = RESPONSE_CODES + "notFound";
     private static final String SERVER_ERROR_METRICS = RESPONSE_CODES + "serverError";
     private static final String OTHER_METRICS = RESPONSE_CODES + "other";
-    private static final String TIMEOUTS_METRICS = INSTRUMENTED_FILTER + "timeouts";
+    public static final String TIMEOUTS_METRICS = INSTRUMENTED_FILTER + "timeouts";
     private static final String ERRORS_METRICS = INSTRUMENTED_FILTER + "errors";
     private static final String ACTIVE_REQUESTS_METRICS = INSTRUMENTED_FILTER + "activeRequests";
     private static final String REQUESTS_METRICS = INSTRUMENTED_FILTER + "requests";
+    private static final String LATENCY_METRICS = INSTRUMENTED_FILTER + "latency.";
+
+    private static final String ERROR_STATUS_CLASS = "error";
+    private static final String TIMEOUT_STATUS_CLASS = "timeout";
 
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
@@ -64,6 +80,7 @@ public class InstrumentedFilter implements Filter {
         errorsMeter = registry.meter(ERRORS_METRICS);
         activeRequests = registry.concurrentGauge(ACTIVE_REQUESTS_METRICS);
         requestTimer = registry.timer(REQUESTS_METRICS);
+        latencyHistograms = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -80,12 +97,15 @@ public class InstrumentedFilter implements Filter {
             if (!error && request.isAsyncStarted()) {
                 request.getAsyncContext().addListener(new AsyncResultListener(context));
             } else {
-                context.stop();
+                long duration = context.stop();
                 activeRequests.dec();
                 if (error) {
                     errorsMeter.mark();
+                    recordLatency(request, ERROR_STATUS_CLASS, duration);
                 } else {
-                    markStatusCodeMeter(((HttpServletResponse) response).getStatus());
+                    int status = ((HttpServletResponse) response).getStatus();
+                    markStatusCodeMeter(status);
+                    recordLatency(request, getStatusClass(status), duration);
                 }
             }
         }
@@ -100,6 +120,46 @@ public class InstrumentedFilter implements Filter {
         }
     }
 
+    private static String getStatusClass(int status) {
+        return status >= 100 && status < 600 ? (status / 100) + "xx" : "other";
+    }
+
+    /**
+     * Records the request latency in the histogram of its route and status
+     * class, the route is the resource method matched by the
+     * {@link DiagnosticFilter} so the number of histograms stays bounded.
+     */
+    private void recordLatency(ServletRequest request, String statusClass, long durationInNanos) {
+        Object route = request.getAttribute(ROUTE_ATTRIBUTE);
+        String key = (route != null ? route : UNMATCHED_ROUTE) + "." + statusClass;
+        LatencyHistogram histogram = latencyHistograms.get(key);
+        if (histogram == null) {
+            histogram = latencyHistograms.computeIfAbsent(key, this::newLatencyHistogram);
+        }
+        histogram.record(durationInNanos);
+    }
+
+    private LatencyHistogram newLatencyHistogram(String key) {
+        LatencyHistogram histogram = new LatencyHistogram(metricsConfig.getLatencyIntervalInSeconds());
+        String name = LATENCY_METRICS + key;
+        registerLatencyGauge(name + ".p50", () -> histogram.getValueAtPercentile(50));
+        registerLatencyGauge(name + ".p90", () -> histogram.getValueAtPercentile(90));
+        registerLatencyGauge(name + ".p99", () -> histogram.getValueAtPercentile(99));
+        registerLatencyGauge(name + ".p999", () -> histogram.getValueAtPercentile(99.9));
+        registerLatencyGauge(name + ".max", histogram::getMaxValue);
+        registry.register(Metadata.builder().withName(name + ".count").withType(MetricType.GAUGE).build(),
+                (Gauge<Long>) histogram::getCount);
+        return histogram;
+    }
+
+    private void registerLatencyGauge(String name, Gauge<Double> gauge) {
+        registry.register(Metadata.builder()
+                .withName(name)
+                .withType(MetricType.GAUGE)
+                .withUnit(MetricUnits.MILLISECONDS)
+                .build(), gauge);
+    }
+
     @Override
     public void destroy() {
     }
@@ -117,25 +177,28 @@ public class InstrumentedFilter implements Filter {
         public void onComplete(AsyncEvent event) throws IOException {
             if (!done) {
                 HttpServletResponse response = (HttpServletResponse) event.getSuppliedResponse();
-                context.stop();
+                long duration = context.stop();
                 activeRequests.dec();
                 markStatusCodeMeter(response.getStatus());
+                recordLatency(event.getSuppliedRequest(), getStatusClass(response.getStatus()), duration);
             }
         }
 
         @Override
         public void onTimeout(AsyncEvent event) throws IOException {
-            context.stop();
+            long duration = context.stop();
             activeRequests.dec();
             timeoutsMeter.mark();
+            recordLatency(event.getSuppliedRequest(), TIMEOUT_STATUS_CLASS, duration);
             done = true;
         }
 
         @Override
         public void onError(AsyncEvent event) throws IOException {
-            context.stop();
+            long duration = context.stop();
             activeRequests.dec();
             errorsMeter.mark();
+            recordLatency(event.getSuppliedRequest(), ERROR_STATUS_CLASS, duration);
             done = true;
         }
 
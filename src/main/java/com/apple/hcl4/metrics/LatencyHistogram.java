@@ -0,0 +1,99 @@
+package com.apple.hcl4.metrics;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Latency distribution of one route and status class.
+ * <p>
+ * The latencies are recorded in microseconds into an HdrHistogram
+ * {@link Recorder}, which does not lock the recording request threads. The
+ * interval histogram is swapped by the first read once the interval has
+ * elapsed, so that the recording side never takes a lock, and the gauges
+ * report the requests recorded between the two latest swaps. When the
+ * metrics are scraped more often than the interval that is the last
+ * interval, otherwise it is the time since the previous scrape which swapped
+ * the histogram.
+ * </p>
+ * <p>
+ * The histograms are packed: only the value ranges actually recorded are
+ * allocated. A key typically costs a few kilobytes. A full 1us..60s range
+ * with two significant digits is 2560 counts, about 20KB per histogram, and
+ * the recorder, the snapshot and the recycled histogram hold four of them,
+ * so a key whose latencies spread over the whole range costs up to about
+ * 100KB.
+ * </p>
+ */
+class LatencyHistogram {
+
+    /**
+     * Highest recorded latency, longer requests are recorded as this value.
+     */
+    private static final long HIGHEST_RECORDED_MICROS = SECONDS.toMicros(60);
+
+    /**
+     * Two significant digits keep the value error under 1%.
+     */
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS, true);
+    private final long intervalInNanos;
+    private Histogram snapshot;
+    private Histogram recycled;
+    private long snapshotTime;
+
+    LatencyHistogram(long intervalInSeconds) {
+        this.intervalInNanos = SECONDS.toNanos(intervalInSeconds);
+        this.snapshot = recorder.getIntervalHistogram();
+        this.snapshotTime = System.nanoTime();
+    }
+
+    void record(long durationInNanos) {
+        recorder.recordValue(Math.min(Math.max(NANOSECONDS.toMicros(durationInNanos), 1), HIGHEST_RECORDED_MICROS));
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return the value of the percentile between the two latest swaps, in
+     * milliseconds
+     */
+    synchronized double getValueAtPercentile(double percentile) {
+        return toMillis(currentSnapshot().getValueAtPercentile(percentile));
+    }
+
+    /**
+     * @return the highest value between the two latest swaps, in milliseconds
+     */
+    synchronized double getMaxValue() {
+        return toMillis(currentSnapshot().getMaxValue());
+    }
+
+    /**
+     * @return the number of requests recorded between the two latest swaps
+     */
+    synchronized long getCount() {
+        return currentSnapshot().getTotalCount();
+    }
+
+    /**
+     * Swaps the interval histogram if the interval has elapsed since the
+     * previous swap.
+     */
+    private Histogram currentSnapshot() {
+        long now = System.nanoTime();
+        if (now - snapshotTime >= intervalInNanos) {
+            Histogram next = recorder.getIntervalHistogram(recycled);
+            recycled = snapshot;
+            snapshot = next;
+            snapshotTime = now;
+        }
+        return snapshot;
+    }
+
+    private static double toMillis(long micros) {
+        return micros / (double) MILLISECONDS.toMicros(1);
+    }
+}
@@ -14,6 +14,9 @@ public class TemplateEngineProducer {
         VelocityEngine ve = new VelocityEngine();
         ve.setProperty(RuntimeConstants.RESOURCE_LOADER, "classpath");
         ve.setProperty("classpath.resource.loader.class", ClasspathResourceLoader.class.getName());
+        // the templates are packaged with the application, parse them once
+        ve.setProperty("classpath.resource.loader.cache", "true");
+        ve.setProperty("classpath.resource.loader.modificationCheckInterval", "0");
         ve.init();
 
         return ve;
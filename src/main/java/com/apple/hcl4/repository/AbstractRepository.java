@@ -1,48 +1,121 @@
 package com.apple.hcl4.repository;
 
+import com.apple.hcl4.config.PersistenceConfig;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
+import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Root;
 import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.EntityType;
 import javax.transaction.Transactional;
 import static javax.transaction.Transactional.TxType.REQUIRED;
 import static javax.transaction.Transactional.TxType.SUPPORTS;
 import javax.ws.rs.core.GenericType;
+import org.eclipse.persistence.queries.CursoredStream;
 
 @Transactional(SUPPORTS)
 public abstract class AbstractRepository<E, P> {
 
     private final Class<E> entityClass;
 
+    @Inject
+    private CountCache countCache;
+
+    @Inject
+    private PersistenceConfig persistenceConfig;
+
     public AbstractRepository(Class<E> entityClass) {
         this.entityClass = entityClass;
     }
 
     protected abstract EntityManager getEntityManager();
 
+    /**
+     * Called after each write, in the writing transaction.
+     */
+    protected void afterWrite() {
+    }
+
     @Transactional(REQUIRED)
     public void create(E entity) {
         getEntityManager().persist(entity);
+        countCache.adjust(entityClass, 1);
+        afterWrite();
     }
 
     @Transactional(REQUIRED)
     public E edit(E entity) {
-        return getEntityManager().merge(entity);
+        E merged = getEntityManager().merge(entity);
+        afterWrite();
+        return merged;
+    }
+
+    /**
+     * Persists all the entities in a single transaction. The persistence
+     * context is flushed and cleared every
+     * {@link PersistenceConfig#getBatchSize()} entities so that the inserts
+     * are sent as JDBC batches and the context stays small.
+     *
+     * @param entities the entities to persist
+     */
+    @Transactional(REQUIRED)
+    public void createAll(Collection<E> entities) {
+        int batchSize = persistenceConfig.getBatchSize();
+        int processed = 0;
+        for (E entity : entities) {
+            getEntityManager().persist(entity);
+            if (++processed % batchSize == 0) {
+                getEntityManager().flush();
+                getEntityManager().clear();
+            }
+        }
+        countCache.adjust(entityClass, processed);
+        afterWrite();
+    }
+
+    /**
+     * Merges all the entities in a single transaction, flushing and clearing
+     * the persistence context every {@link PersistenceConfig#getBatchSize()}
+     * entities.
+     *
+     * @param entities the entities to merge
+     * @return the merged entities
+     */
+    @Transactional(REQUIRED)
+    public List<E> editAll(Collection<E> entities) {
+        int batchSize = persistenceConfig.getBatchSize();
+        List<E> merged = new ArrayList<>(entities.size());
+        for (E entity : entities) {
+            merged.add(getEntityManager().merge(entity));
+            if (merged.size() % batchSize == 0) {
+                getEntityManager().flush();
+                getEntityManager().clear();
+            }
+        }
+        afterWrite();
+        return merged;
     }
 
     @Transactional(REQUIRED)
     public void remove(E entity) {
         getEntityManager().remove(getEntityManager().merge(entity));
+        countCache.adjust(entityClass, -1);
+        afterWrite();
     }
 
     @SuppressWarnings("unchecked")
@@ -60,6 +133,39 @@ public abstract class AbstractRepository<E, P> {
         return getEntityManager().createQuery(cq).getResultList();
     }
 
+    /**
+     * Streams all the entities to the {@code action} without materializing the
+     * whole table. Rows are read through an EclipseLink cursored stream
+     * {@code fetchSize} at a time, the rows already read are released from the
+     * cursor and the persistence context is cleared after each chunk, so
+     * memory stays bounded whatever the number of rows.
+     *
+     * @param fetchSize the JDBC fetch size, the cursor page size and the clear
+     * interval
+     * @param action the callback receiving each entity
+     */
+    public void streamAll(int fetchSize, Consumer<? super E> action) {
+        CriteriaQuery<E> cq = getEntityManager().getCriteriaBuilder().createQuery(entityClass);
+        cq.select(cq.from(entityClass));
+        Query q = getEntityManager().createQuery(cq);
+        q.setHint("eclipselink.cursor", true);
+        q.setHint("eclipselink.cursor.page-size", fetchSize);
+        q.setHint("eclipselink.jdbc.fetch-size", fetchSize);
+        CursoredStream cursor = (CursoredStream) q.getSingleResult();
+        try {
+            int processed = 0;
+            while (cursor.hasNext()) {
+                action.accept(entityClass.cast(cursor.next()));
+                if (++processed % fetchSize == 0) {
+                    cursor.releasePrevious();
+                    getEntityManager().clear();
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
     public List<E> findRange(int startPosition, int size) {
         return findRange(startPosition, size, null);
     }
@@ -76,7 +182,101 @@ public abstract class AbstractRepository<E, P> {
         return q.getResultList();
     }
 
+    /**
+     * Keyset (seek) pagination : returns the next {@code size} entities ordered
+     * by id, starting right after {@code lastId}. Unlike
+     * {@link #findRange(int, int)} the database does not have to scan and
+     * discard the preceding rows, so deep pages cost the same as the first one.
+     *
+     * @param lastId the last id of the previous page, or null for the first
+     * page
+     * @param size the page size
+     * @return the entities following {@code lastId}
+     */
+    public List<E> findRangeAfter(P lastId, int size) {
+        return findRangeAfter(lastId, size, null);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public List<E> findRangeAfter(P lastId, int size, String entityGraph) {
+        CriteriaBuilder builder = getEntityManager().getCriteriaBuilder();
+        CriteriaQuery<E> cq = builder.createQuery(entityClass);
+        Root<E> root = cq.from(entityClass);
+        Path<Comparable> idPath = root.get(getIdAttributeName());
+        cq.select(root);
+        if (lastId != null) {
+            cq.where(builder.greaterThan(idPath, (Comparable) lastId));
+        }
+        cq.orderBy(builder.asc(idPath));
+        TypedQuery<E> q = getEntityManager().createQuery(cq);
+        q.setMaxResults(size);
+        if (entityGraph != null) {
+            q.setHint("javax.persistence.loadgraph", getEntityManager().getEntityGraph(entityGraph));
+        }
+        return q.getResultList();
+    }
+
+    /**
+     * Projection query : reads only the given attributes and passes them to the
+     * matching constructor of {@code resultClass}, so no managed entity is
+     * created.
+     *
+     * @param <T> the projection type
+     * @param resultClass the projection class
+     * @param startPosition the position of the first result
+     * @param size the page size
+     * @param attributes the entity attributes, in the constructor order
+     * @return the projections
+     */
+    public <T> List<T> findProjectionRange(Class<T> resultClass, int startPosition, int size, String... attributes) {
+        CriteriaBuilder builder = getEntityManager().getCriteriaBuilder();
+        CriteriaQuery<T> cq = builder.createQuery(resultClass);
+        Root<E> root = cq.from(entityClass);
+        cq.select(builder.construct(resultClass, getSelections(root, attributes)));
+        TypedQuery<T> q = getEntityManager().createQuery(cq);
+        q.setMaxResults(size);
+        q.setFirstResult(startPosition);
+        return q.getResultList();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public <T> List<T> findProjectionRangeAfter(Class<T> resultClass, P lastId, int size, String... attributes) {
+        CriteriaBuilder builder = getEntityManager().getCriteriaBuilder();
+        CriteriaQuery<T> cq = builder.createQuery(resultClass);
+        Root<E> root = cq.from(entityClass);
+        Path<Comparable> idPath = root.get(getIdAttributeName());
+        cq.select(builder.construct(resultClass, getSelections(root, attributes)));
+        if (lastId != null) {
+            cq.where(builder.greaterThan(idPath, (Comparable) lastId));
+        }
+        cq.orderBy(builder.asc(idPath));
+        TypedQuery<T> q = getEntityManager().createQuery(cq);
+        q.setMaxResults(size);
+        return q.getResultList();
+    }
+
+    private Selection<?>[] getSelections(Root<E> root, String[] attributes) {
+        return Arrays.stream(attributes)
+                .map(attribute -> root.get(attribute))
+                .toArray(Selection<?>[]::new);
+    }
+
+    protected String getIdAttributeName() {
+        EntityType<E> entityType = getEntityManager().getMetamodel().entity(entityClass);
+        return entityType.getId(entityType.getIdType().getJavaType()).getName();
+    }
+
+    /**
+     * @return the number of entities, served from the {@link CountCache}
+     */
     public int count() {
+        return countCache.get(entityClass, this::countExact);
+    }
+
+    /**
+     * @return the number of entities, always read from the database
+     */
+    public int countExact() {
         CriteriaBuilder builder = getEntityManager().getCriteriaBuilder();
         CriteriaQuery<Number> criteriaQuery = builder.createQuery(Number.class);
         Root<E> root = criteriaQuery.from(entityClass);
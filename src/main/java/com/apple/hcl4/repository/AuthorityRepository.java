@@ -1,6 +1,7 @@
 package com.apple.hcl4.repository;
 
 import com.apple.hcl4.domain.Authority;
+import javax.enterprise.event.Event;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 
@@ -9,6 +10,9 @@ public class AuthorityRepository extends AbstractRepository<Authority, String> {
     @Inject
     private EntityManager em;
 
+    @Inject
+    private Event<ReferenceDataChanged> referenceDataChanged;
+
     @Override
     protected EntityManager getEntityManager() {
         return em;
@@ -17,4 +21,18 @@ public class AuthorityRepository extends AbstractRepository<Authority, String> {
     public AuthorityRepository() {
         super(Authority.class);
     }
+
+    @Override
+    protected void afterWrite() {
+        referenceDataChanged.fire(new ReferenceDataChanged(Authority.class));
+    }
+
+    /**
+     * @param name the authority name
+     * @return the reference of the authority in the current persistence
+     * context, its state is not loaded
+     */
+    public Authority getReference(String name) {
+        return em.getReference(Authority.class, name);
+    }
 }
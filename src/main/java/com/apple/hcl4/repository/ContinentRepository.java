@@ -1,5 +1,6 @@
 package com.apple.hcl4.repository;
 
+import javax.enterprise.event.Event;
 import javax.persistence.EntityManager;
 import javax.inject.Inject;
 import com.apple.hcl4.domain.Continent;
@@ -9,6 +10,9 @@ public class ContinentRepository extends AbstractRepository<Continent, Long> {
     @Inject
     private EntityManager em;
 
+    @Inject
+    private Event<ReferenceDataChanged> referenceDataChanged;
+
     @Override
     protected EntityManager getEntityManager() {
         return em;
@@ -18,4 +22,9 @@ public class ContinentRepository extends AbstractRepository<Continent, Long> {
         super(Continent.class);
     }
 
+    @Override
+    protected void afterWrite() {
+        referenceDataChanged.fire(new ReferenceDataChanged(Continent.class));
+    }
+
 }
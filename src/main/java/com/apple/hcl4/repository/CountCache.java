@@ -0,0 +1,102 @@
+package com.apple.hcl4.repository;
+
+import com.apple.hcl4.config.PersistenceConfig;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+/**
+ * Per-entity cache of the row counts used by the paginated list endpoints.
+ * <p>
+ * The repositories adjust the cached value when entities are created or
+ * removed, once the transaction commits. Entries older than the configured
+ * time-to-live are reloaded from the database, which bounds the drift caused
+ * by bulk or cascaded changes.
+ * </p>
+ * <p>
+ * Each adjustment or invalidation bumps the generation of the entity class,
+ * a count loaded while the generation changed may miss the change so it is
+ * returned but not cached.
+ * </p>
+ */
+@ApplicationScoped
+public class CountCache {
+
+    @Inject
+    private PersistenceConfig persistenceConfig;
+
+    @Inject
+    private TransactionSupport transactionSupport;
+
+    private final ConcurrentMap<Class<?>, Entry> counts = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Class<?>, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    public int get(Class<?> entityClass, IntSupplier loader) {
+        long ttl = persistenceConfig.getCountTtlInSeconds();
+        if (ttl == 0) {
+            return loader.getAsInt();
+        }
+        Entry entry = counts.get(entityClass);
+        if (entry != null && (ttl < 0 || !entry.isOlderThan(ttl * 1000))) {
+            return entry.count;
+        }
+        AtomicLong generation = generation(entityClass);
+        long loadedGeneration = generation.get();
+        Entry loaded = new Entry(loader.getAsInt());
+        // the generation is only bumped within compute on the same key, so the check and the store are atomic
+        counts.compute(entityClass, (key, current) -> generation.get() == loadedGeneration ? loaded : current);
+        return loaded.count;
+    }
+
+    public void adjust(Class<?> entityClass, int delta) {
+        transactionSupport.afterCommit(() -> apply(entityClass, delta));
+    }
+
+    public void invalidate(Class<?> entityClass) {
+        AtomicLong generation = generation(entityClass);
+        counts.compute(entityClass, (key, entry) -> {
+            generation.incrementAndGet();
+            return null;
+        });
+    }
+
+    private void apply(Class<?> entityClass, int delta) {
+        AtomicLong generation = generation(entityClass);
+        counts.compute(entityClass, (key, entry) -> {
+            generation.incrementAndGet();
+            return entry != null ? entry.plus(delta) : null;
+        });
+    }
+
+    private AtomicLong generation(Class<?> entityClass) {
+        return generations.computeIfAbsent(entityClass, key -> new AtomicLong());
+    }
+
+    private static final class Entry {
+
+        private final int count;
+        private final long loadedAt;
+
+        private Entry(int count) {
+            this(count, System.currentTimeMillis());
+        }
+
+        private Entry(int count, long loadedAt) {
+            this.count = count;
+            this.loadedAt = loadedAt;
+        }
+
+        private Entry plus(int delta) {
+            return new Entry(Math.max(0, count + delta), loadedAt);
+        }
+
+        private boolean isOlderThan(long millis) {
+            return System.currentTimeMillis() - loadedAt > millis;
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.apple.hcl4.repository;
 
+import javax.enterprise.event.Event;
 import javax.persistence.EntityManager;
 import javax.inject.Inject;
 import com.apple.hcl4.domain.Country;
@@ -9,6 +10,9 @@ public class CountryRepository extends AbstractRepository<Country, Long> {
     @Inject
     private EntityManager em;
 
+    @Inject
+    private Event<ReferenceDataChanged> referenceDataChanged;
+
     @Override
     protected EntityManager getEntityManager() {
         return em;
@@ -18,4 +22,9 @@ public class CountryRepository extends AbstractRepository<Country, Long> {
         super(Country.class);
     }
 
+    @Override
+    protected void afterWrite() {
+        referenceDataChanged.fire(new ReferenceDataChanged(Country.class));
+    }
+
 }
@@ -0,0 +1,75 @@
+package com.apple.hcl4.repository;
+
+import com.apple.hcl4.domain.MailOutbox;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.transaction.Transactional;
+import static javax.transaction.Transactional.TxType.REQUIRED;
+
+public class MailOutboxRepository extends AbstractRepository<MailOutbox, Long> {
+
+    @Inject
+    private EntityManager em;
+
+    @Override
+    protected EntityManager getEntityManager() {
+        return em;
+    }
+
+    public MailOutboxRepository() {
+        super(MailOutbox.class);
+    }
+
+    /**
+     * Claims the oldest due e-mails. The rows are locked while their next
+     * attempt date is moved to {@code claimUntil}, so that the other nodes
+     * skip them until the claim expires.
+     *
+     * @param now the current time
+     * @param claimUntil the end of the claim
+     * @param size the maximum number of e-mails to claim
+     * @return the claimed e-mails
+     */
+    @Transactional(REQUIRED)
+    public List<MailOutbox> claimDue(Instant now, Instant claimUntil, int size) {
+        List<MailOutbox> due = em.createNamedQuery("findDueMailOutbox", MailOutbox.class)
+                .setParameter("now", now)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setMaxResults(size)
+                .getResultList();
+        due.forEach(mail -> mail.setNextAttemptDate(claimUntil));
+        return due;
+    }
+
+    /**
+     * Claims the e-mail if it is still due.
+     *
+     * @param id the id of the e-mail
+     * @param now the current time
+     * @param claimUntil the end of the claim
+     * @return the claimed e-mail, empty if it was sent, claimed by another
+     * node or is waiting for a retry
+     */
+    @Transactional(REQUIRED)
+    public Optional<MailOutbox> claim(Long id, Instant now, Instant claimUntil) {
+        MailOutbox mail = em.find(MailOutbox.class, id, LockModeType.PESSIMISTIC_WRITE);
+        if (mail == null || mail.isFailed() || mail.getNextAttemptDate().isAfter(now)) {
+            return Optional.empty();
+        }
+        mail.setNextAttemptDate(claimUntil);
+        return Optional.of(mail);
+    }
+
+    /**
+     * @return the number of e-mails waiting to be sent, the failed ones
+     * excluded
+     */
+    public long countPending() {
+        return em.createNamedQuery("countPendingMailOutbox", Long.class).getSingleResult();
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.apple.hcl4.repository;
+
+/**
+ * Event fired by the reference-data repositories on every write, the
+ * authorities included.
+ */
+public class ReferenceDataChanged {
+
+    private final Class<?> entityClass;
+
+    public ReferenceDataChanged(Class<?> entityClass) {
+        this.entityClass = entityClass;
+    }
+
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.apple.hcl4.repository;
+
+import javax.annotation.Resource;
+import javax.enterprise.context.ApplicationScoped;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * Runs the repository cache maintenance once the current transaction is
+ * completed.
+ */
+@ApplicationScoped
+public class TransactionSupport {
+
+    @Resource
+    private TransactionSynchronizationRegistry txRegistry;
+
+    /**
+     * Runs the action after the current transaction commits, or immediately
+     * if there is no active transaction.
+     */
+    public void afterCommit(Runnable action) {
+        afterCompletion(action, true);
+    }
+
+    /**
+     * Runs the action after the current transaction completes, whatever its
+     * outcome, or immediately if there is no active transaction.
+     */
+    public void afterCompletion(Runnable action) {
+        afterCompletion(action, false);
+    }
+
+    private void afterCompletion(Runnable action, boolean committedOnly) {
+        if (txRegistry == null || txRegistry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            action.run();
+            return;
+        }
+        txRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (!committedOnly || status == Status.STATUS_COMMITTED) {
+                    action.run();
+                }
+            }
+        });
+    }
+
+}
@@ -1,14 +1,23 @@
 package com.apple.hcl4.repository;
 
 import com.apple.hcl4.domain.User;
+import com.apple.hcl4.service.dto.UserDTO;
 import static java.util.Collections.singletonMap;
 import java.util.List;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toMap;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 
 public class UserRepository extends AbstractRepository<User, Long> {
 
+    private static final String[] USER_DTO_ATTRIBUTES = {"id", "login", "firstName", "lastName",
+        "email", "activated", "langKey", "createdBy", "createdDate", "lastModifiedBy", "lastModifiedDate"};
+
     @Inject
     private EntityManager em;
 
@@ -49,8 +58,67 @@ public class UserRepository extends AbstractRepository<User, Long> {
         return findSingleByNamedQuery("findUserByLogin", "graph.user.authorities", singletonMap("login", login));
     }
 
+    /**
+     * @return the logins among {@code logins} already used by a user
+     */
+    public List<String> findExistingLogins(Collection<String> logins) {
+        return em.createNamedQuery("findUserLoginsByLogins", String.class)
+                .setParameter("logins", logins)
+                .getResultList();
+    }
+
+    /**
+     * @return the emails among {@code emails} already used by a user
+     */
+    public List<String> findExistingEmails(Collection<String> emails) {
+        return em.createNamedQuery("findUserEmailsByEmails", String.class)
+                .setParameter("emails", emails)
+                .getResultList();
+    }
+
     public List<User> getUsersWithAuthorities(int startPosition, int size) {
         return findRange(startPosition, size, "graph.user.authorities");
     }
 
+    public List<UserDTO> getUserDTOs(int startPosition, int size) {
+        return withAuthorities(findProjectionRange(UserDTO.class, startPosition, size, USER_DTO_ATTRIBUTES));
+    }
+
+    public List<UserDTO> getUserDTOsAfter(Long lastId, int size) {
+        return withAuthorities(findProjectionRangeAfter(UserDTO.class, lastId, size, USER_DTO_ATTRIBUTES));
+    }
+
+    /**
+     * Streams all the users as DTOs, read by keyset batches of
+     * {@code fetchSize} with the authority names of each batch read in a
+     * single query. Projections are not managed, so nothing accumulates in the
+     * persistence context.
+     */
+    public void streamUserDTOs(int fetchSize, Consumer<? super UserDTO> action) {
+        Long lastId = null;
+        List<UserDTO> batch;
+        do {
+            batch = getUserDTOsAfter(lastId, fetchSize);
+            batch.forEach(action);
+            if (!batch.isEmpty()) {
+                lastId = batch.get(batch.size() - 1).getId();
+            }
+        } while (batch.size() == fetchSize);
+    }
+
+    /**
+     * Reads the authority names of the page in a single query.
+     */
+    private List<UserDTO> withAuthorities(List<UserDTO> userDTOs) {
+        if (userDTOs.isEmpty()) {
+            return userDTOs;
+        }
+        Map<Long, UserDTO> userDTOsById = userDTOs.stream().collect(toMap(UserDTO::getId, identity()));
+        em.createNamedQuery("findAuthorityNamesByUserIds", Object[].class)
+                .setParameter("ids", userDTOsById.keySet())
+                .getResultList()
+                .forEach(row -> userDTOsById.get((Long) row[0]).getAuthorities().add((String) row[1]));
+        return userDTOs;
+    }
+
 }
@@ -0,0 +1,166 @@
+package com.apple.hcl4.security;
+
+import java.io.ByteArrayOutputStream;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.Arrays;
+
+/**
+ * The JWS algorithms of the issued and accepted tokens.
+ * <p>
+ * ES256 signatures are the raw concatenation of R and S in the JWS format,
+ * they are transcoded from and to the ASN.1 DER format of the JCA. EdDSA
+ * (Ed25519) is only available on JDK 15 and later, see
+ * {@link #isSupported()}.
+ * </p>
+ */
+public enum JwtAlgorithm {
+
+    RS256("SHA256withRSA", "RSA", 0),
+    ES256("SHA256withECDSA", "EC", 32),
+    EdDSA("Ed25519", "Ed25519", 0);
+
+    private final String signatureAlgorithm;
+
+    private final String keyAlgorithm;
+
+    /**
+     * Length of R and S in the JWS format of the ECDSA signatures, 0 for the
+     * other algorithms.
+     */
+    private final int ecdsaPartLength;
+
+    JwtAlgorithm(String signatureAlgorithm, String keyAlgorithm, int ecdsaPartLength) {
+        this.signatureAlgorithm = signatureAlgorithm;
+        this.keyAlgorithm = keyAlgorithm;
+        this.ecdsaPartLength = ecdsaPartLength;
+    }
+
+    /**
+     * @return the JCA key algorithm of the keys
+     */
+    public String getKeyAlgorithm() {
+        return keyAlgorithm;
+    }
+
+    /**
+     * @return true if the JDK provides the signature algorithm
+     */
+    public boolean isSupported() {
+        try {
+            Signature.getInstance(signatureAlgorithm);
+            return true;
+        } catch (NoSuchAlgorithmException ex) {
+            return false;
+        }
+    }
+
+    public Signature newSignature() throws NoSuchAlgorithmException {
+        return Signature.getInstance(signatureAlgorithm);
+    }
+
+    /**
+     * @param key the private or public key
+     * @return the algorithm of the key, or null if the key type is not
+     * supported
+     */
+    public static JwtAlgorithm of(Key key) {
+        switch (key.getAlgorithm()) {
+            case "RSA":
+                return RS256;
+            case "EC":
+                return ES256;
+            case "EdDSA":
+            case "Ed25519":
+                return EdDSA;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @param name the {@code alg} header value
+     * @return the algorithm, or null if the algorithm is not supported
+     */
+    public static JwtAlgorithm of(String name) {
+        for (JwtAlgorithm algorithm : values()) {
+            if (algorithm.name().equals(name)) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Converts the JCA signature to the JWS format.
+     */
+    byte[] toJws(byte[] signature) throws SignatureException {
+        if (ecdsaPartLength == 0) {
+            return signature;
+        }
+        // SEQUENCE { INTEGER r, INTEGER s }
+        int offset = signature[1] == (byte) 0x81 ? 3 : 2;
+        byte[] jws = new byte[2 * ecdsaPartLength];
+        for (int part = 0; part < 2; part++) {
+            if (signature[offset] != 0x02) {
+                throw new SignatureException("Invalid ECDSA signature");
+            }
+            int length = signature[offset + 1];
+            int start = offset + 2;
+            // strip the sign byte, left pad to the part length
+            int skip = Math.max(length - ecdsaPartLength, 0);
+            System.arraycopy(signature, start + skip, jws, (part + 1) * ecdsaPartLength - (length - skip), length - skip);
+            offset = start + length;
+        }
+        return jws;
+    }
+
+    /**
+     * Converts the JWS signature to the JCA format.
+     */
+    byte[] toJca(byte[] signature) throws SignatureException {
+        if (ecdsaPartLength == 0) {
+            return signature;
+        }
+        if (signature.length != 2 * ecdsaPartLength) {
+            throw new SignatureException("Invalid ECDSA signature length");
+        }
+        ByteArrayOutputStream integers = new ByteArrayOutputStream(2 * ecdsaPartLength + 6);
+        for (int part = 0; part < 2; part++) {
+            byte[] value = Arrays.copyOfRange(signature, part * ecdsaPartLength, (part + 1) * ecdsaPartLength);
+            int start = 0;
+            while (start < value.length - 1 && value[start] == 0) {
+                start++;
+            }
+            boolean signByte = (value[start] & 0x80) != 0;
+            integers.write(0x02);
+            integers.write(value.length - start + (signByte ? 1 : 0));
+            if (signByte) {
+                integers.write(0);
+            }
+            integers.write(value, start, value.length - start);
+        }
+        byte[] content = integers.toByteArray();
+        ByteArrayOutputStream der = new ByteArrayOutputStream(content.length + 3);
+        der.write(0x30);
+        if (content.length > 0x7f) {
+            der.write(0x81);
+        }
+        der.write(content.length);
+        der.write(content, 0, content.length);
+        return der.toByteArray();
+    }
+
+    /**
+     * Shorthand used by the key loading to reject the unsupported algorithms
+     * with an explicit message.
+     */
+    void checkSupported() throws GeneralSecurityException {
+        if (!isSupported()) {
+            throw new NoSuchAlgorithmException(name() + " is not supported by this JDK");
+        }
+    }
+}
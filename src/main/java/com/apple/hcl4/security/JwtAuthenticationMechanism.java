@@ -0,0 +1,45 @@
+package com.apple.hcl4.security;
+
+import static com.apple.hcl4.config.Constants.BEARER_PREFIX;
+import java.util.Optional;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.security.enterprise.AuthenticationStatus;
+import javax.security.enterprise.CallerPrincipal;
+import javax.security.enterprise.authentication.mechanism.http.HttpAuthenticationMechanism;
+import javax.security.enterprise.authentication.mechanism.http.HttpMessageContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import static javax.ws.rs.core.HttpHeaders.AUTHORIZATION;
+
+/**
+ * Authenticates the requests carrying an {@code Authorization: Bearer} token
+ * verified by the {@link TokenVerifier}.
+ * <p>
+ * It replaces the container MP-JWT mechanism, which only verifies RS256
+ * tokens. Requests without a token go through unauthenticated and are
+ * rejected by the {@code @RolesAllowed} resources, requests with an invalid
+ * token are answered with 401 (Unauthorized).
+ * </p>
+ */
+@ApplicationScoped
+public class JwtAuthenticationMechanism implements HttpAuthenticationMechanism {
+
+    @Inject
+    private TokenVerifier tokenVerifier;
+
+    @Override
+    public AuthenticationStatus validateRequest(HttpServletRequest request, HttpServletResponse response,
+            HttpMessageContext httpMessageContext) {
+        String authorization = request.getHeader(AUTHORIZATION);
+        if (authorization == null || !authorization.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            return httpMessageContext.doNothing();
+        }
+        Optional<VerifiedToken> token = tokenVerifier.verify(authorization.substring(BEARER_PREFIX.length()).trim());
+        if (!token.isPresent()) {
+            return httpMessageContext.responseUnauthorized();
+        }
+        return httpMessageContext.notifyContainerAboutLogin(
+                new CallerPrincipal(token.get().getSubject()), token.get().getGroups());
+    }
+}
@@ -0,0 +1,81 @@
+package com.apple.hcl4.security;
+
+import static java.lang.Thread.currentThread;
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+
+/**
+ * Reads the PEM encoded token keys, from the classpath or else from the file
+ * system.
+ */
+final class JwtKeys {
+
+    private JwtKeys() {
+    }
+
+    /**
+     * @param location the PKCS#8 PEM private key
+     * @param algorithm the algorithm of the key
+     */
+    static PrivateKey readPrivateKey(String location, JwtAlgorithm algorithm) throws IOException, GeneralSecurityException {
+        algorithm.checkSupported();
+        return KeyFactory.getInstance(algorithm.getKeyAlgorithm())
+                .generatePrivate(new PKCS8EncodedKeySpec(readPem(location)));
+    }
+
+    /**
+     * @param location the X.509 PEM public key, of any supported algorithm
+     */
+    static PublicKey readPublicKey(String location) throws IOException, GeneralSecurityException {
+        X509EncodedKeySpec keySpec = new X509EncodedKeySpec(readPem(location));
+        for (JwtAlgorithm algorithm : JwtAlgorithm.values()) {
+            if (algorithm.isSupported()) {
+                try {
+                    return KeyFactory.getInstance(algorithm.getKeyAlgorithm()).generatePublic(keySpec);
+                } catch (InvalidKeySpecException ex) {
+                    // not a key of this algorithm
+                }
+            }
+        }
+        throw new InvalidKeySpecException("Unsupported public key " + location);
+    }
+
+    private static byte[] readPem(String location) throws IOException {
+        StringBuilder key = new StringBuilder();
+        try (InputStream in = open(location);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("-----")) {
+                    key.append(line.trim());
+                }
+            }
+        }
+        return Base64.getDecoder().decode(key.toString());
+    }
+
+    private static InputStream open(String location) throws IOException {
+        InputStream in = currentThread().getContextClassLoader().getResourceAsStream(location);
+        if (in != null) {
+            return in;
+        }
+        if (Files.exists(Paths.get(location))) {
+            return Files.newInputStream(Paths.get(location));
+        }
+        throw new FileNotFoundException(location);
+    }
+}
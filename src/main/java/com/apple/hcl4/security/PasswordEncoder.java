@@ -1,35 +1,170 @@
 package com.apple.hcl4.security;
 
+import com.apple.hcl4.config.PasswordConfig;
+import com.apple.hcl4.util.RandomUtil;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import org.slf4j.Logger;
 
+/**
+ * Hashes the passwords with salted PBKDF2 (HMAC-SHA256).
+ * <p>
+ * The hashes are stored as
+ * {@code $pbkdf2-sha256$<iterations>$<salt>$<hash>}, salt and hash Base64
+ * encoded, so that the iteration count can be raised without invalidating
+ * the stored passwords: {@link #needsRehash(String)} tells which ones should
+ * be hashed again on the next successful login. The unsalted MD5 hashes of
+ * the previous versions are still accepted by {@link #matches(String, String)}
+ * and always need a rehash. The {@link #UNUSABLE_PASSWORD} of the users
+ * created by an administrator matches no password until it is replaced by
+ * the password reset.
+ * </p>
+ * <p>
+ * The hashing itself runs on the {@link PasswordHashingExecutor}.
+ * </p>
+ */
+@ApplicationScoped
 public class PasswordEncoder {
 
+    /**
+     * Stored instead of a hash for the users who did not choose a password
+     * yet.
+     */
+    public static final String UNUSABLE_PASSWORD = "!";
+
+    static final String PREFIX = "$pbkdf2-sha256$";
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+
+    private static final int SALT_LENGTH = 16;
+
+    private static final int HASH_LENGTH = 32;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
     @Inject
     private Logger log;
 
-    public String encode(String passwordToHash) {
-        String generatedPassword = null;
+    @Inject
+    private PasswordConfig passwordConfig;
+
+    @Inject
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    private volatile String dummyHash;
+
+    /**
+     * @return the salted hash of the password
+     */
+    public String encode(String rawPassword) {
+        int iterations = passwordConfig.getIterations();
+        return passwordHashingExecutor.execute(() -> hash(rawPassword, iterations));
+    }
+
+    /**
+     * Without a stored hash, null for an unknown user or the
+     * {@link #UNUSABLE_PASSWORD}, the password is checked against a dummy
+     * hash so that the answer takes as long as with a stored one.
+     *
+     * @return true if the password matches the stored hash
+     */
+    public boolean matches(String rawPassword, String encodedPassword) {
+        if (rawPassword == null) {
+            return false;
+        }
+        if (encodedPassword == null || UNUSABLE_PASSWORD.equals(encodedPassword)) {
+            passwordHashingExecutor.execute(() -> check(rawPassword, getDummyHash()));
+            return false;
+        }
+        if (!encodedPassword.startsWith(PREFIX)) {
+            String legacy = md5(rawPassword);
+            return legacy != null
+                    && MessageDigest.isEqual(legacy.getBytes(UTF_8), encodedPassword.getBytes(UTF_8));
+        }
+        return passwordHashingExecutor.execute(() -> check(rawPassword, encodedPassword));
+    }
+
+    /**
+     * @return true if the stored hash is a legacy one or was computed with
+     * less iterations than currently configured
+     */
+    public boolean needsRehash(String encodedPassword) {
+        if (encodedPassword == null || !encodedPassword.startsWith(PREFIX)) {
+            return true;
+        }
+        String[] parts = encodedPassword.substring(PREFIX.length()).split("\\$");
+        try {
+            return parts.length != 3 || Integer.parseInt(parts[0]) < passwordConfig.getIterations();
+        } catch (NumberFormatException ex) {
+            return true;
+        }
+    }
+
+    private String getDummyHash() {
+        String hash = dummyHash;
+        if (hash == null) {
+            // racing threads compute equivalent hashes
+            hash = hash(RandomUtil.generatePassword(), passwordConfig.getIterations());
+            dummyHash = hash;
+        }
+        return hash;
+    }
+
+    static String hash(String rawPassword, int iterations) {
+        byte[] salt = new byte[SALT_LENGTH];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations
+                + '$' + encoder.encodeToString(salt)
+                + '$' + encoder.encodeToString(pbkdf2(rawPassword, salt, iterations, HASH_LENGTH));
+    }
+
+    static boolean check(String rawPassword, String encodedPassword) {
+        String[] parts = encodedPassword.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) {
+            return false;
+        }
+        try {
+            Base64.Decoder decoder = Base64.getDecoder();
+            byte[] salt = decoder.decode(parts[1]);
+            byte[] expected = decoder.decode(parts[2]);
+            byte[] actual = pbkdf2(rawPassword, salt, Integer.parseInt(parts[0]), expected.length);
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    private static byte[] pbkdf2(String rawPassword, byte[] salt, int iterations, int length) {
+        PBEKeySpec spec = new PBEKeySpec(rawPassword.toCharArray(), salt, iterations, length * 8);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private String md5(String rawPassword) {
         try {
-            // Create MessageDigest instance for MD5
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            //Add password bytes to digest
-            md.update(passwordToHash.getBytes());
-            //Get the hash's bytes 
-            byte[] bytes = md.digest();
-            //This bytes[] has bytes in decimal format;
-            //Convert it to hexadecimal format
+            byte[] bytes = MessageDigest.getInstance("MD5").digest(rawPassword.getBytes());
             StringBuilder sb = new StringBuilder();
             for (int i = 0; i < bytes.length; i++) {
                 sb.append(Integer.toString((bytes[i] & 0xff) + 0x100, 16).substring(1));
             }
-            //Get complete hashed password in hex format
-            generatedPassword = sb.toString();
+            return sb.toString();
         } catch (NoSuchAlgorithmException e) {
             log.info("No Such algorithm: " + e.getMessage());
+            return null;
         }
-        return generatedPassword;
     }
 }
@@ -0,0 +1,128 @@
+package com.apple.hcl4.security;
+
+import com.apple.hcl4.config.PasswordConfig;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeoutException;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.ServiceUnavailableException;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Meter;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.Timer;
+import org.slf4j.Logger;
+
+/**
+ * Runs the password hashing on a dedicated, bounded pool of threads.
+ * <p>
+ * The hashes are deliberately expensive, so that a burst of logins would
+ * otherwise occupy every HTTP worker thread. At most
+ * {@code service.password.threads} hashes run at a time and
+ * {@code service.password.queue.size} wait for a thread; the requests beyond
+ * them, or waiting longer than {@code service.password.timeoutInMillis}, are
+ * shed with 503 (Service Unavailable). The queue depth and the active
+ * threads are exported as the {@code PasswordHashing.queueDepth} and
+ * {@code PasswordHashing.active} gauges, the shed requests as the
+ * {@code PasswordHashing.rejected} meter and the hashing time as the
+ * {@code PasswordHashing.duration} timer.
+ * </p>
+ */
+@ApplicationScoped
+public class PasswordHashingExecutor {
+
+    private static final String PASSWORD_HASHING = "PasswordHashing.";
+
+    private static final long RETRY_AFTER_SECONDS = 1;
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private PasswordConfig passwordConfig;
+
+    @Inject
+    private MetricRegistry registry;
+
+    @Resource
+    private ManagedThreadFactory threadFactory;
+
+    private ThreadPoolExecutor executor;
+
+    private Meter rejected;
+
+    private Timer duration;
+
+    @PostConstruct
+    public void init() {
+        int threads = passwordConfig.getThreads();
+        executor = new ThreadPoolExecutor(threads, threads, 60, SECONDS,
+                new ArrayBlockingQueue<>(Math.max(passwordConfig.getQueueSize(), 1)), threadFactory);
+        rejected = registry.meter(PASSWORD_HASHING + "rejected");
+        duration = registry.timer(PASSWORD_HASHING + "duration");
+        registerGauge(PASSWORD_HASHING + "queueDepth", () -> executor.getQueue().size());
+        registerGauge(PASSWORD_HASHING + "active", executor::getActiveCount);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Runs the hashing task and waits for its result.
+     *
+     * @throws ServiceUnavailableException if the queue is full or the task
+     * did not complete in time
+     */
+    public <T> T execute(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                Timer.Context context = duration.time();
+                try {
+                    return task.call();
+                } finally {
+                    context.stop();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            rejected.mark();
+            log.warn("Password hashing saturated, request rejected");
+            throw new ServiceUnavailableException(RETRY_AFTER_SECONDS);
+        }
+        try {
+            return future.get(passwordConfig.getTimeoutInMillis(), MILLISECONDS);
+        } catch (TimeoutException ex) {
+            future.cancel(true);
+            rejected.mark();
+            log.warn("Password hashing timed out, request rejected");
+            throw new ServiceUnavailableException(RETRY_AFTER_SECONDS);
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException(RETRY_AFTER_SECONDS);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    private void registerGauge(String name, Gauge<Integer> gauge) {
+        registry.register(Metadata.builder().withName(name).withType(MetricType.GAUGE).build(), gauge);
+    }
+}
@@ -1,22 +1,43 @@
 package com.apple.hcl4.security;
 
 import com.apple.hcl4.config.SecurityConfig;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
-import static io.jsonwebtoken.Header.JWT_TYPE;
-import static io.jsonwebtoken.Header.TYPE;
-import static java.lang.Thread.currentThread;
-import java.security.KeyFactory;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
-import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.Signature;
+import java.security.SignatureException;
 import java.util.*;
 import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import org.eclipse.microprofile.jwt.Claims;
 import org.slf4j.Logger;
 
+/**
+ * Issues the signed JWT of the authenticated users, with the RS256, ES256 or
+ * EdDSA algorithm configured by {@code mp.jwt.sign.algorithm}.
+ * <p>
+ * The private key is decoded once, the header is serialized once and the
+ * claims JSON is written directly, so that a login only costs the
+ * signature. The {@link Signature} instances are initialized with the key
+ * once per thread and reused, {@link Signature#sign()} resets them for the
+ * next token.
+ * </p>
+ */
+@ApplicationScoped
 public class TokenProvider {
 
+    private static final Base64.Encoder BASE64_URL = Base64.getUrlEncoder().withoutPadding();
+
+    private JwtAlgorithm algorithm;
+
+    /**
+     * The base64url encoded {@code {"typ":"JWT","alg":"..."}} header followed
+     * by the dot separator.
+     */
+    private byte[] header;
+
     private PrivateKey privateKey;
 
     private String issuer;
@@ -25,6 +46,8 @@ public class TokenProvider {
 
     private long tokenValidityMillisForRememberMe;
 
+    private final ThreadLocal<Signature> signatures = ThreadLocal.withInitial(this::newSignature);
+
     @Inject
     private Logger log;
 
@@ -33,12 +56,18 @@ public class TokenProvider {
 
     @PostConstruct
     public void init() {
+        this.algorithm = JwtAlgorithm.of(securityConfig.getSignAlgorithm());
+        if (algorithm == null) {
+            throw new IllegalStateException("Unsupported token algorithm " + securityConfig.getSignAlgorithm());
+        }
         try {
-            this.privateKey = readPrivateKey("privateKey.pem");
+            this.privateKey = JwtKeys.readPrivateKey(securityConfig.getPrivateKeyLocation(), algorithm);
         } catch (Exception ex) {
-            log.error("Unable to read privateKey.pem ", ex);
+            log.error("Unable to read {} ", securityConfig.getPrivateKeyLocation(), ex);
             throw new IllegalStateException(ex);
         }
+        this.header = (BASE64_URL.encodeToString(("{\"typ\":\"JWT\",\"alg\":\"" + algorithm.name() + "\"}").getBytes(UTF_8)) + '.')
+                .getBytes(US_ASCII);
 
         this.issuer = securityConfig.getIssuer();
         this.tokenValidityMillis
@@ -52,34 +81,76 @@ public class TokenProvider {
         long expirationTime = issuedTime
                 + (rememberMe ? tokenValidityMillisForRememberMe : tokenValidityMillis);
 
-        return Jwts.builder()
-                .setHeaderParam(TYPE, JWT_TYPE)
-                .setId(UUID.randomUUID().toString())
-                .setSubject(username)
-                .claim(Claims.groups.name(), groups)
-                .setIssuer(issuer)
-                .setIssuedAt(new Date(issuedTime))
-                .setExpiration(new Date(expirationTime))
-                .signWith(SignatureAlgorithm.RS256, privateKey)
-                .compact();
+        StringBuilder claims = new StringBuilder(128 + 32 * groups.size());
+        claims.append("{\"jti\":");
+        appendString(claims, UUID.randomUUID().toString());
+        claims.append(",\"sub\":");
+        appendString(claims, username);
+        claims.append(",\"").append(Claims.groups.name()).append("\":[");
+        String separator = "";
+        for (String group : groups) {
+            claims.append(separator);
+            appendString(claims, group);
+            separator = ",";
+        }
+        claims.append("],\"iss\":");
+        appendString(claims, issuer);
+        claims.append(",\"iat\":").append(issuedTime / 1000)
+                .append(",\"exp\":").append(expirationTime / 1000)
+                .append('}');
+
+        byte[] payload = BASE64_URL.encode(claims.toString().getBytes(UTF_8));
+        byte[] signingInput = Arrays.copyOf(header, header.length + payload.length);
+        System.arraycopy(payload, 0, signingInput, header.length, payload.length);
+
+        try {
+            Signature signature = signatures.get();
+            signature.update(signingInput);
+            return new StringBuilder(signingInput.length + 344)
+                    .append(new String(signingInput, US_ASCII))
+                    .append('.')
+                    .append(BASE64_URL.encodeToString(algorithm.toJws(signature.sign())))
+                    .toString();
+        } catch (SignatureException ex) {
+            // the signature state is unknown, the next token uses a new one
+            signatures.remove();
+            throw new IllegalStateException("Unable to sign the token", ex);
+        }
+    }
+
+    private Signature newSignature() {
+        try {
+            Signature signature = algorithm.newSignature();
+            signature.initSign(privateKey);
+            return signature;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
     }
 
-    private PrivateKey readPrivateKey(String resourceName) throws Exception {
-        byte[] byteBuffer = new byte[16384];
-        int length = currentThread().getContextClassLoader()
-                .getResource(resourceName)
-                .openStream()
-                .read(byteBuffer);
-
-        String key = new String(byteBuffer, 0, length)
-                .replaceAll("-----BEGIN (.*)-----", "")
-                .replaceAll("-----END (.*)----", "")
-                .replaceAll("\r\n", "")
-                .replaceAll("\n", "")
-                .trim();
-
-        return KeyFactory.getInstance("RSA")
-                .generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(key)));
+    /**
+     * Appends the JSON string literal of the value.
+     */
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
     }
 
 }
@@ -0,0 +1,153 @@
+package com.apple.hcl4.security;
+
+import com.apple.hcl4.config.SecurityConfig;
+import java.io.StringReader;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonString;
+import org.eclipse.microprofile.jwt.Claims;
+import org.slf4j.Logger;
+
+/**
+ * Verifies the bearer tokens issued by the {@link TokenProvider}.
+ * <p>
+ * The token is verified with the configured public keys of the algorithm of
+ * its {@code alg} header, so that RS256, ES256 and EdDSA tokens are all
+ * accepted while the signing algorithm or key is rotated. The
+ * {@link Signature} instances are initialized once per thread and key, and
+ * the tokens already verified are served from the {@link VerifiedTokenCache}.
+ * </p>
+ */
+@ApplicationScoped
+public class TokenVerifier {
+
+    private static final Base64.Decoder BASE64_URL = Base64.getUrlDecoder();
+
+    private Map<JwtAlgorithm, List<PublicKey>> publicKeys;
+
+    private String issuer;
+
+    private final ThreadLocal<Map<PublicKey, Signature>> signatures = ThreadLocal.withInitial(IdentityHashMap::new);
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private SecurityConfig securityConfig;
+
+    @Inject
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @PostConstruct
+    public void init() {
+        this.publicKeys = new EnumMap<>(JwtAlgorithm.class);
+        for (String location : securityConfig.getPublicKeyLocations()) {
+            try {
+                PublicKey publicKey = JwtKeys.readPublicKey(location.trim());
+                publicKeys.computeIfAbsent(JwtAlgorithm.of(publicKey), algorithm -> new ArrayList<>()).add(publicKey);
+            } catch (Exception ex) {
+                log.error("Unable to read {} ", location, ex);
+                throw new IllegalStateException(ex);
+            }
+        }
+        this.issuer = securityConfig.getIssuer();
+    }
+
+    /**
+     * @param token the compact serialized token
+     * @return the verified token, or empty if the token is malformed, not
+     * signed by one of the public keys, not issued by this application or
+     * expired
+     */
+    public Optional<VerifiedToken> verify(String token) {
+        return verifiedTokenCache.get(token, this::verifySignature);
+    }
+
+    private Optional<VerifiedToken> verifySignature(String token) {
+        int headerEnd = token.indexOf('.');
+        int payloadEnd = token.lastIndexOf('.');
+        if (headerEnd <= 0 || payloadEnd <= headerEnd) {
+            return Optional.empty();
+        }
+        try {
+            JsonObject header = parse(token.substring(0, headerEnd));
+            JwtAlgorithm algorithm = JwtAlgorithm.of(header.getString("alg", null));
+            List<PublicKey> keys = algorithm == null ? null : publicKeys.get(algorithm);
+            if (keys == null) {
+                return Optional.empty();
+            }
+            byte[] signingInput = token.substring(0, payloadEnd).getBytes(US_ASCII);
+            byte[] signature = algorithm.toJca(BASE64_URL.decode(token.substring(payloadEnd + 1)));
+            if (!verify(algorithm, keys, signingInput, signature)) {
+                return Optional.empty();
+            }
+
+            JsonObject claims = parse(token.substring(headerEnd + 1, payloadEnd));
+            long expirationTime = claims.getJsonNumber(Claims.exp.name()).longValueExact() * 1000;
+            if (!issuer.equals(claims.getString(Claims.iss.name(), null))
+                    || System.currentTimeMillis() >= expirationTime) {
+                return Optional.empty();
+            }
+            Set<String> groups = new HashSet<>();
+            JsonArray groupArray = claims.getJsonArray(Claims.groups.name());
+            if (groupArray != null) {
+                groupArray.getValuesAs(JsonString.class).forEach(group -> groups.add(group.getString()));
+            }
+            return Optional.of(new VerifiedToken(claims.getString(Claims.sub.name()),
+                    Collections.unmodifiableSet(groups), expirationTime));
+        } catch (GeneralSecurityException | RuntimeException ex) {
+            log.debug("Invalid token: {}", ex.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private boolean verify(JwtAlgorithm algorithm, List<PublicKey> keys, byte[] signingInput, byte[] signature)
+            throws GeneralSecurityException {
+        Map<PublicKey, Signature> threadSignatures = signatures.get();
+        for (PublicKey key : keys) {
+            Signature verifier = threadSignatures.get(key);
+            if (verifier == null) {
+                verifier = algorithm.newSignature();
+                verifier.initVerify(key);
+                threadSignatures.put(key, verifier);
+            }
+            try {
+                verifier.update(signingInput);
+                if (verifier.verify(signature)) {
+                    return true;
+                }
+            } catch (SignatureException ex) {
+                // malformed signature, the state of the verifier is unknown
+                threadSignatures.remove(key);
+            }
+        }
+        return false;
+    }
+
+    private static JsonObject parse(String base64) {
+        try (JsonReader reader = Json.createReader(new StringReader(new String(BASE64_URL.decode(base64), UTF_8)))) {
+            return reader.readObject();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.apple.hcl4.security;
+
+import java.util.Set;
+
+/**
+ * The caller and the groups of a token whose signature, issuer and expiration
+ * have been verified.
+ */
+public class VerifiedToken {
+
+    private final String subject;
+
+    private final Set<String> groups;
+
+    private final long expirationTime;
+
+    public VerifiedToken(String subject, Set<String> groups, long expirationTime) {
+        this.subject = subject;
+        this.groups = groups;
+        this.expirationTime = expirationTime;
+    }
+
+    /**
+     * @return the login of the caller
+     */
+    public String getSubject() {
+        return subject;
+    }
+
+    /**
+     * @return the groups of the caller
+     */
+    public Set<String> getGroups() {
+        return groups;
+    }
+
+    /**
+     * @return the expiration time, in milliseconds since the epoch
+     */
+    public long getExpirationTime() {
+        return expirationTime;
+    }
+
+    public boolean isExpired(long now) {
+        return now >= expirationTime;
+    }
+}
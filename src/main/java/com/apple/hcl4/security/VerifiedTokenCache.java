@@ -0,0 +1,150 @@
+package com.apple.hcl4.security;
+
+import com.apple.hcl4.config.SecurityConfig;
+import java.nio.ByteBuffer;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Meter;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+
+/**
+ * Cache of the verified bearer tokens, so that the signature of a token is
+ * only verified on its first request.
+ * <p>
+ * The tokens are keyed by their SHA-256 digest, the tokens themselves are
+ * not kept in memory. An entry is dropped once its token expires, and the
+ * least recently used entries are evicted beyond
+ * {@code mp.jwt.verify.cache.size} entries; the cache is split in
+ * independently locked segments to keep the lock contention low. Hits,
+ * misses and evictions are exported as {@code VerifiedTokenCache.hits},
+ * {@code .misses} and {@code .evictions} meters, the number of entries as the
+ * {@code VerifiedTokenCache.size} gauge.
+ * </p>
+ */
+@ApplicationScoped
+public class VerifiedTokenCache {
+
+    private static final String VERIFIED_TOKEN_CACHE = "VerifiedTokenCache.";
+
+    private static final int SEGMENTS = 16;
+
+    @Inject
+    private SecurityConfig securityConfig;
+
+    @Inject
+    private MetricRegistry registry;
+
+    private Segment[] segments;
+
+    private Meter hits;
+
+    private Meter misses;
+
+    private Meter evictions;
+
+    private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    });
+
+    @PostConstruct
+    public void init() {
+        int size = securityConfig.getVerifiedTokenCacheSize();
+        if (size <= 0) {
+            return;
+        }
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(Math.max(size / SEGMENTS, 1));
+        }
+        hits = registry.meter(VERIFIED_TOKEN_CACHE + "hits");
+        misses = registry.meter(VERIFIED_TOKEN_CACHE + "misses");
+        evictions = registry.meter(VERIFIED_TOKEN_CACHE + "evictions");
+        registry.register(Metadata.builder().withName(VERIFIED_TOKEN_CACHE + "size").withType(MetricType.GAUGE).build(),
+                (Gauge<Integer>) this::size);
+    }
+
+    /**
+     * @param token the compact serialized token
+     * @param verifier verifies the token on a cache miss
+     * @return the cached or newly verified token, or empty if the token is
+     * invalid or expired
+     */
+    public Optional<VerifiedToken> get(String token, Function<String, Optional<VerifiedToken>> verifier) {
+        if (segments == null) {
+            return verifier.apply(token);
+        }
+        ByteBuffer key = ByteBuffer.wrap(digests.get().digest(token.getBytes(US_ASCII)));
+        Segment segment = segments[(key.hashCode() & Integer.MAX_VALUE) % SEGMENTS];
+        long now = System.currentTimeMillis();
+        VerifiedToken cached;
+        synchronized (segment) {
+            cached = segment.get(key);
+            if (cached != null && cached.isExpired(now)) {
+                segment.remove(key);
+                cached = null;
+            }
+        }
+        if (cached != null) {
+            hits.mark();
+            return Optional.of(cached);
+        }
+        misses.mark();
+        Optional<VerifiedToken> verified = verifier.apply(token);
+        // only the valid tokens are cached, an invalid token is verified again
+        verified.ifPresent(value -> {
+            synchronized (segment) {
+                segment.put(key, value);
+            }
+        });
+        return verified;
+    }
+
+    private int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Access ordered map evicting its least recently used entry.
+     */
+    private class Segment extends LinkedHashMap<ByteBuffer, VerifiedToken> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        Segment(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ByteBuffer, VerifiedToken> eldest) {
+            if (size() > maxSize) {
+                evictions.mark();
+                return true;
+            }
+            return false;
+        }
+    }
+}
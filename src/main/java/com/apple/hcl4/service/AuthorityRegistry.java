@@ -0,0 +1,102 @@
+package com.apple.hcl4.service;
+
+import com.apple.hcl4.domain.Authority;
+import com.apple.hcl4.repository.AuthorityRepository;
+import com.apple.hcl4.repository.ReferenceDataChanged;
+import java.util.List;
+import static java.util.Collections.unmodifiableList;
+import static java.util.stream.Collectors.toList;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.context.control.RequestContextController;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import org.slf4j.Logger;
+
+/**
+ * Registry of the authority names.
+ * <p>
+ * The names are loaded at startup and reloaded after any committed write
+ * through the {@link AuthorityRepository}. The authorities handed out are
+ * references of the current persistence context, resolved from the known
+ * names without a query, so that the user writes no longer look up their
+ * roles.
+ * </p>
+ */
+@ApplicationScoped
+public class AuthorityRegistry {
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private AuthorityRepository authorityRepository;
+
+    @Inject
+    private Instance<RequestContextController> requestContextControllers;
+
+    private volatile List<String> names;
+
+    private volatile boolean stale = true;
+
+    public void onStartup(@Observes @Initialized(ApplicationScoped.class) Object init) {
+        RequestContextController requestContextController = requestContextControllers.get();
+        boolean activated = requestContextController.activate();
+        try {
+            refresh();
+        } catch (RuntimeException ex) {
+            log.warn("Authorities could not be loaded at startup, they will be loaded on first access", ex);
+            stale = true;
+        } finally {
+            if (activated) {
+                requestContextController.deactivate();
+            }
+            requestContextControllers.destroy(requestContextController);
+        }
+    }
+
+    public void onChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) ReferenceDataChanged change) {
+        if (change.getEntityClass() == Authority.class) {
+            log.debug("Authorities changed");
+            stale = true;
+        }
+    }
+
+    /**
+     * @return the names of all the authorities
+     */
+    public List<String> getNames() {
+        List<String> current = names;
+        if (stale || current == null) {
+            synchronized (this) {
+                if (stale || names == null) {
+                    refresh();
+                }
+                current = names;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @param name the authority name
+     * @return the managed reference of the authority, or null if there is no
+     * authority with this name
+     */
+    public Authority getReference(String name) {
+        return getNames().contains(name) ? authorityRepository.getReference(name) : null;
+    }
+
+    private void refresh() {
+        // cleared before the load so that a write committed during it marks the names stale
+        stale = false;
+        names = unmodifiableList(authorityRepository.findAll()
+                .stream()
+                .map(Authority::getName)
+                .collect(toList()));
+        log.debug("Loaded authorities : {}", names);
+    }
+
+}
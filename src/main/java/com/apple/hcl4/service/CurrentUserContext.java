@@ -0,0 +1,50 @@
+package com.apple.hcl4.service;
+
+import com.apple.hcl4.domain.User;
+import com.apple.hcl4.repository.UserRepository;
+import com.apple.hcl4.security.SecurityHelper;
+import java.util.Optional;
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
+
+/**
+ * The authenticated user of the current request.
+ * <p>
+ * The user is looked up with its authorities on first use and then shared by
+ * the controllers and services taking part in the request, so that an account
+ * request queries the user once. The entity stays managed by the request
+ * scoped EntityManager, the changes made through it are seen by the
+ * following readers.
+ * </p>
+ */
+@RequestScoped
+public class CurrentUserContext {
+
+    @Inject
+    private SecurityHelper securityHelper;
+
+    @Inject
+    private UserRepository userRepository;
+
+    private Optional<User> user;
+
+    /**
+     * @return the login of the current user, or null if not authenticated
+     */
+    public String getLogin() {
+        return securityHelper.getCurrentUserLogin();
+    }
+
+    /**
+     * @return the current user with its authorities, empty if not
+     * authenticated or not found
+     */
+    public Optional<User> getUser() {
+        if (user == null) {
+            String login = getLogin();
+            user = login == null ? Optional.empty() : userRepository.findOneWithAuthoritiesByLogin(login);
+        }
+        return user;
+    }
+
+}
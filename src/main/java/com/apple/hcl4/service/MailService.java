@@ -1,16 +1,30 @@
 package com.apple.hcl4.service;
 
+import com.apple.hcl4.config.MailConfig;
+import com.apple.hcl4.domain.MailOutbox;
 import com.apple.hcl4.domain.User;
 import com.apple.hcl4.mail.MailEvent;
+import com.apple.hcl4.mail.MailExecutor;
+import com.apple.hcl4.repository.MailOutboxRepository;
+import com.apple.hcl4.repository.TransactionSupport;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import static java.util.stream.Collectors.toList;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Event;
+import javax.enterprise.event.NotificationOptions;
 import javax.inject.Inject;
 import org.slf4j.Logger;
 
 /**
  * Service for sending e-mails.
  * <p>
- * CDI events is used to send e-mails asynchronously.
+ * The e-mails are queued in the mail outbox, in the transaction of the
+ * caller, and sent in the background by the
+ * {@link com.apple.hcl4.mail.MailDispatcher}. Once the transaction commits a
+ * {@link MailEvent} is fired asynchronously on the bounded
+ * {@link MailExecutor} to send the e-mail at once, when the executor is
+ * saturated the e-mail waits for the next outbox run.
  * </p>
  */
 @ApplicationScoped
@@ -19,22 +33,68 @@ public class MailService {
     @Inject
     private Logger log;
 
+    @Inject
+    private MailConfig mailConfig;
+
+    @Inject
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Inject
+    private TransactionSupport transactionSupport;
+
     @Inject
     private Event<MailEvent> eventProducer;
 
+    @Inject
+    private MailExecutor mailExecutor;
+
     public void sendActivationEmail(User user) {
         log.debug("Sending activation e-mail to '{}'", user.getEmail());
-        eventProducer.fireAsync(new MailEvent(user, "email.activation.title", "activationEmail"));
+        queue(user, "email.activation.title", "activationEmail");
     }
 
     public void sendCreationEmail(User user) {
         log.debug("Sending creation e-mail to '{}'", user.getEmail());
-        eventProducer.fireAsync(new MailEvent(user, "email.creation.title", "creationEmail"));
+        queue(user, "email.creation.title", "creationEmail");
+    }
+
+    public void sendCreationEmails(List<User> users) {
+        log.debug("Sending creation e-mail to {} users", users.size());
+        if (!mailConfig.isEnable()) {
+            log.debug("Mail service is not enabled");
+            return;
+        }
+        mailOutboxRepository.createAll(users.stream()
+                .map(user -> new MailOutbox(user.getId(), "email.creation.title", "creationEmail"))
+                .collect(toList()));
     }
 
     public void sendPasswordResetMail(User user) {
         log.debug("Sending password reset e-mail to '{}'", user.getEmail());
-        eventProducer.fireAsync(new MailEvent(user, "email.reset.title", "passwordResetEmail"));
+        queue(user, "email.reset.title", "passwordResetEmail");
+    }
+
+    private void queue(User user, String subjectTemplate, String contentTemplate) {
+        if (!mailConfig.isEnable()) {
+            log.debug("Mail service is not enabled");
+            return;
+        }
+        MailOutbox mail = new MailOutbox(user.getId(), subjectTemplate, contentTemplate);
+        mailOutboxRepository.create(mail);
+        Long mailId = mail.getId();
+        transactionSupport.afterCommit(() -> notifyQueued(mailId));
+    }
+
+    private void notifyQueued(Long mailId) {
+        try {
+            eventProducer.fireAsync(new MailEvent(mailId), NotificationOptions.ofExecutor(mailExecutor))
+                    .exceptionally(ex -> {
+                        log.debug("e-mail {} left to the outbox: {}", mailId, ex.getMessage());
+                        return null;
+                    });
+        } catch (RejectedExecutionException ex) {
+            log.debug("Mail executor saturated, e-mail {} left to the outbox", mailId);
+        }
     }
 
 }
@@ -0,0 +1,116 @@
+package com.apple.hcl4.service;
+
+import com.apple.hcl4.domain.Continent;
+import com.apple.hcl4.domain.Country;
+import com.apple.hcl4.repository.ReferenceDataChanged;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+import org.slf4j.Logger;
+
+/**
+ * Service serving the countries and continents from an in-memory snapshot.
+ * <p>
+ * The snapshot is loaded at startup and rebuilt as a whole by the observer of
+ * any committed write through the reference-data repositories, before the
+ * writing request completes. It is loaded by a dedicated EntityManager closed
+ * right after, so its entities are detached and never touched by the
+ * persistence context of a request. Readers only read a volatile reference,
+ * they never lock and never touch the persistence context. If a rebuild
+ * fails the snapshot is marked stale and the next reader rebuilds it.
+ * </p>
+ */
+@ApplicationScoped
+public class ReferenceDataService {
+
+    @Inject
+    private Logger log;
+
+    @PersistenceUnit(unitName = "hcl_PU")
+    private EntityManagerFactory emf;
+
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    private volatile ReferenceDataSnapshot snapshot;
+
+    private volatile boolean stale = true;
+
+    public void onStartup(@Observes @Initialized(ApplicationScoped.class) Object init) {
+        try {
+            refresh();
+        } catch (RuntimeException ex) {
+            log.warn("Reference data could not be loaded at startup, it will be loaded on first access", ex);
+        }
+    }
+
+    public void onChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) ReferenceDataChanged change) {
+        if (change.getEntityClass() != Country.class && change.getEntityClass() != Continent.class) {
+            return;
+        }
+        log.debug("Reference data changed : {}", change.getEntityClass().getSimpleName());
+        stale = true;
+        try {
+            refresh();
+        } catch (RuntimeException ex) {
+            log.warn("Reference data could not be reloaded, it will be reloaded on next access", ex);
+        }
+    }
+
+    public ReferenceDataSnapshot getSnapshot() {
+        ReferenceDataSnapshot current = snapshot;
+        if (stale || current == null) {
+            refresh();
+            current = snapshot;
+        }
+        return current;
+    }
+
+    private void refresh() {
+        refreshLock.lock();
+        try {
+            if (!stale && snapshot != null) {
+                return;
+            }
+            // cleared before the load so that a write committed during it triggers a new load
+            stale = false;
+            try {
+                snapshot = load();
+            } catch (RuntimeException ex) {
+                stale = true;
+                throw ex;
+            }
+            log.debug("Loaded reference data snapshot : {} countries, {} continents",
+                    snapshot.getCountries().size(), snapshot.getContinents().size());
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private ReferenceDataSnapshot load() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            List<Country> countries = em.createQuery("select c from Country c", Country.class).getResultList();
+            List<Continent> continents = em.createQuery("select c from Continent c", Continent.class).getResultList();
+            // the entities are detached once the EntityManager is closed, load their lazy attributes now
+            countries.forEach(country -> {
+                country.getCountryName();
+                country.getCountryContinent();
+            });
+            continents.forEach(continent -> {
+                continent.getContinentName();
+                continent.getCountriesSet().size();
+            });
+            return new ReferenceDataSnapshot(countries, continents);
+        } finally {
+            em.close();
+        }
+    }
+
+}
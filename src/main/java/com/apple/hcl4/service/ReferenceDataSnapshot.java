@@ -0,0 +1,109 @@
+package com.apple.hcl4.service;
+
+import com.apple.hcl4.domain.Continent;
+import com.apple.hcl4.domain.Country;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.ToLongFunction;
+
+/**
+ * Immutable snapshot of the countries and continents.
+ * <p>
+ * The rows are kept in arrays sorted by id, so that lookups by id and keyset
+ * pages are binary searches, and the countries are also indexed by their
+ * upper-cased flag.
+ * </p>
+ */
+public final class ReferenceDataSnapshot {
+
+    private final Table<Country> countries;
+    private final Map<String, Country> countriesByFlag;
+    private final Table<Continent> continents;
+
+    public ReferenceDataSnapshot(List<Country> countries, List<Continent> continents) {
+        this.countries = new Table<>(countries.toArray(new Country[0]), Country::getId);
+        this.continents = new Table<>(continents.toArray(new Continent[0]), Continent::getId);
+        Map<String, Country> byFlag = new HashMap<>(countries.size() * 2);
+        for (Country country : countries) {
+            byFlag.put(country.getCountryFlag().toUpperCase(Locale.ENGLISH), country);
+        }
+        this.countriesByFlag = Collections.unmodifiableMap(byFlag);
+    }
+
+    public Table<Country> getCountries() {
+        return countries;
+    }
+
+    public Optional<Country> findCountryByFlag(String countryFlag) {
+        if (countryFlag == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(countriesByFlag.get(countryFlag.toUpperCase(Locale.ENGLISH)));
+    }
+
+    public Table<Continent> getContinents() {
+        return continents;
+    }
+
+    /**
+     * Rows of one entity sorted by id.
+     *
+     * @param <T> the entity type
+     */
+    public static final class Table<T> {
+
+        private final T[] rows;
+        private final long[] ids;
+
+        private Table(T[] rows, ToLongFunction<T> idMapper) {
+            Arrays.sort(rows, Comparator.comparingLong(idMapper));
+            this.rows = rows;
+            this.ids = new long[rows.length];
+            for (int i = 0; i < rows.length; i++) {
+                ids[i] = idMapper.applyAsLong(rows[i]);
+            }
+        }
+
+        public int size() {
+            return rows.length;
+        }
+
+        public Optional<T> find(long id) {
+            int index = Arrays.binarySearch(ids, id);
+            return index >= 0 ? Optional.of(rows[index]) : Optional.empty();
+        }
+
+        public List<T> range(int startPosition, int size) {
+            return slice(startPosition, size);
+        }
+
+        /**
+         * @param lastId the last id of the previous page, or null for the first
+         * page
+         * @param size the page size
+         * @return the rows following {@code lastId}
+         */
+        public List<T> rangeAfter(Long lastId, int size) {
+            if (lastId == null) {
+                return slice(0, size);
+            }
+            int index = Arrays.binarySearch(ids, lastId);
+            return slice(index >= 0 ? index + 1 : -index - 1, size);
+        }
+
+        private List<T> slice(int from, int size) {
+            if (from < 0 || from >= rows.length || size <= 0) {
+                return Collections.emptyList();
+            }
+            int to = (int) Math.min((long) from + size, rows.length);
+            return Collections.unmodifiableList(Arrays.asList(rows).subList(from, to));
+        }
+    }
+
+}
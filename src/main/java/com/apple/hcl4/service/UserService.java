@@ -1,6 +1,5 @@
 package com.apple.hcl4.service;
 
-import com.apple.hcl4.repository.AuthorityRepository;
 import com.apple.hcl4.repository.UserRepository;
 import com.apple.hcl4.security.AuthoritiesConstants;
 import com.apple.hcl4.security.PasswordEncoder;
@@ -15,6 +14,7 @@ import java.util.*;
 import static java.util.stream.Collectors.*;
 import javax.inject.Inject;
 import javax.security.enterprise.AuthenticationException;
+import javax.transaction.Transactional;
 import org.slf4j.Logger;
 
 /**
@@ -35,7 +35,13 @@ public class UserService {
     private UserRepository userRepository;
 
     @Inject
-    private AuthorityRepository authorityRepository;
+    private AuthorityRegistry authorityRegistry;
+
+    @Inject
+    private CurrentUserContext currentUserContext;
+
+    @Inject
+    private MailService mailService;
 
     public Optional<User> activateRegistration(String key) {
         log.debug("Activating user for activation key {}", key);
@@ -63,6 +69,11 @@ public class UserService {
                 });
     }
 
+    /**
+     * Generates a reset key and queues the password reset e-mail, in the same
+     * transaction.
+     */
+    @Transactional
     public Optional<User> requestPasswordReset(String mail) {
         return userRepository.findOneByEmail(mail)
                 .filter(User::getActivated)
@@ -70,15 +81,21 @@ public class UserService {
                     user.setResetKey(RandomUtil.generateResetKey());
                     user.setResetDate(Instant.now());
                     userRepository.edit(user);
+                    mailService.sendPasswordResetMail(user);
                     return user;
                 });
     }
 
+    /**
+     * Registers the user and queues the activation e-mail, in the same
+     * transaction.
+     */
+    @Transactional
     public User createUser(String login, String password, String firstName, String lastName, String email,
             String langKey) {
 
         User newUser = new User();
-        Authority authority = authorityRepository.find(AuthoritiesConstants.USER);
+        Authority authority = authorityRegistry.getReference(AuthoritiesConstants.USER);
         Set<Authority> authorities = new HashSet<>();
         String encryptedPassword = passwordEncoder.encode(password);
         newUser.setLogin(login);
@@ -97,11 +114,40 @@ public class UserService {
         String currentLogin = securityHelper.getCurrentUserLogin();
         newUser.setCreatedBy(currentLogin != null ? currentLogin : AuthoritiesConstants.ANONYMOUS);
         userRepository.create(newUser);
+        mailService.sendActivationEmail(newUser);
         log.debug("Created Information for User: {}", newUser);
         return newUser;
     }
 
+    /**
+     * Creates the user and queues the creation e-mail, in the same
+     * transaction.
+     */
+    @Transactional
     public User createUser(UserDTO userDTO) {
+        User user = newUser(userDTO);
+        userRepository.create(user);
+        mailService.sendCreationEmail(user);
+        log.debug("Created Information for User: {}", user);
+        return user;
+    }
+
+    /**
+     * Creates the users and queues their creation e-mails, in the same
+     * transaction.
+     */
+    @Transactional
+    public List<User> createUsers(List<? extends UserDTO> userDTOs) {
+        List<User> users = userDTOs.stream()
+                .map(this::newUser)
+                .collect(toList());
+        userRepository.createAll(users);
+        mailService.sendCreationEmails(users);
+        log.debug("Created Information for {} Users", users.size());
+        return users;
+    }
+
+    private User newUser(UserDTO userDTO) {
         User user = new User();
         user.setLogin(userDTO.getLogin());
         user.setFirstName(userDTO.getFirstName());
@@ -113,20 +159,22 @@ public class UserService {
             user.setLangKey(userDTO.getLangKey());
         }
         if (userDTO.getAuthorities() != null) {
-            user.setAuthorities(userDTO.getAuthorities().stream().map(authorityRepository::find).collect(toSet()));
+            user.setAuthorities(userDTO.getAuthorities().stream()
+                    .map(authorityRegistry::getReference)
+                    .filter(Objects::nonNull)
+                    .collect(toSet()));
         }
-        String encryptedPassword = passwordEncoder.encode(RandomUtil.generatePassword());
-        user.setPassword(encryptedPassword);
+        // hashing a random password per user would cost a PBKDF2 run per row,
+        // the user chooses the password with the reset key
+        user.setPassword(PasswordEncoder.UNUSABLE_PASSWORD);
         user.setResetKey(RandomUtil.generateResetKey());
         user.setResetDate(Instant.now());
         user.setActivated(true);
-        userRepository.create(user);
-        log.debug("Created Information for User: {}", user);
         return user;
     }
 
     public void updateUser(String firstName, String lastName, String email, String langKey) {
-        userRepository.findOneByLogin(securityHelper.getCurrentUserLogin())
+        currentUserContext.getUser()
                 .ifPresent(user -> {
                     user.setFirstName(firstName);
                     user.setLastName(lastName);
@@ -149,7 +197,8 @@ public class UserService {
                     user.setLangKey(userDTO.getLangKey());
                     user.setAuthorities(userDTO.getAuthorities()
                             .stream()
-                            .map(authorityRepository::find)
+                            .map(authorityRegistry::getReference)
+                            .filter(Objects::nonNull)
                             .collect(toSet())
                     );
                     userRepository.edit(user);
@@ -167,8 +216,8 @@ public class UserService {
     }
 
     public void changePassword(String currentPassword, String newPassword) {
-        userRepository.findOneByLogin(securityHelper.getCurrentUserLogin())
-                .filter(user -> user.getPassword().equals(passwordEncoder.encode(currentPassword)))
+        currentUserContext.getUser()
+                .filter(user -> passwordEncoder.matches(currentPassword, user.getPassword()))
                 .ifPresent(user -> {
                     String encryptedPassword = passwordEncoder.encode(newPassword);
                     user.setPassword(encryptedPassword);
@@ -186,24 +235,31 @@ public class UserService {
     }
 
     public User getUserWithAuthorities() {
-        return userRepository.findOneWithAuthoritiesByLogin(securityHelper.getCurrentUserLogin()).orElse(null);
+        return currentUserContext.getUser().orElse(null);
     }
 
     public User authenticate(LoginDTO loginDTO) throws AuthenticationException {
-        Optional<User> userOptional = userRepository.findOneWithAuthoritiesByLogin(loginDTO.getUsername());
-        return userOptional.filter(User::getActivated)
-                .filter(user -> user.getPassword().equals(passwordEncoder.encode(loginDTO.getPassword())))
+        Optional<User> userOptional = userRepository.findOneWithAuthoritiesByLogin(loginDTO.getUsername())
+                .filter(User::getActivated);
+        // an unknown or deactivated login is checked against the dummy hash,
+        // so that the response time does not tell which logins exist
+        boolean matches = passwordEncoder.matches(loginDTO.getPassword(), userOptional.map(User::getPassword).orElse(null));
+        User user = userOptional.filter(u -> matches)
                 .orElseThrow(AuthenticationException::new);
+        if (passwordEncoder.needsRehash(user.getPassword())) {
+            // upgrade the legacy or weaker hash while the raw password is at hand
+            user.setPassword(passwordEncoder.encode(loginDTO.getPassword()));
+            userRepository.edit(user);
+            log.debug("Rehashed password for User: {}", user);
+        }
+        return user;
     }
 
     /**
      * @return a list of all the authorities
      */
     public List<String> getAuthorities() {
-        return authorityRepository.findAll()
-                .stream()
-                .map(Authority::getName)
-                .collect(toList());
+        return authorityRegistry.getNames();
     }
 
 }
@@ -7,6 +7,7 @@ import com.apple.hcl4.domain.Authority;
 import com.apple.hcl4.domain.User;
 import java.io.Serializable;
 import java.time.Instant;
+import java.util.HashSet;
 import java.util.Set;
 import static java.util.stream.Collectors.toSet;
 import javax.validation.constraints.Email;
@@ -61,6 +62,17 @@ public class UserDTO implements Serializable {
                 user.getAuthorities().stream().map(Authority::getName).collect(toSet()));
     }
 
+    /**
+     * Constructor used by the projection queries, the authorities are set
+     * afterwards.
+     */
+    public UserDTO(Long id, String login, String firstName, String lastName,
+            String email, boolean activated, String langKey,
+            String createdBy, Instant createdDate, String lastModifiedBy, Instant lastModifiedDate) {
+        this(id, login, firstName, lastName, email, activated, langKey,
+                createdBy, createdDate, lastModifiedBy, lastModifiedDate, new HashSet<>());
+    }
+
     public UserDTO(Long id, String login, String firstName, String lastName,
             String email, boolean activated, String langKey,
             String createdBy, Instant createdDate, String lastModifiedBy, Instant lastModifiedDate,
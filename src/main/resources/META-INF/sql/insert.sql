@@ -5,4 +5,5 @@ INSERT INTO authority ("name") VALUES ('ROLE_ANONYMOUS');
 INSERT INTO authority ("name") VALUES ('ROLE_USER');
 INSERT INTO user_authority (user_id, authority_name) VALUES (1001, 'ROLE_USER');
 INSERT INTO user_authority (user_id, authority_name) VALUES (1002, 'ROLE_USER');
-INSERT INTO user_authority (user_id, authority_name) VALUES (1002, 'ROLE_ADMIN');
\ No newline at end of file
+INSERT INTO user_authority (user_id, authority_name) VALUES (1002, 'ROLE_ADMIN');
+UPDATE id_generator SET gen_value = (SELECT MAX(id) FROM account) WHERE gen_name = 'account';
@@ -0,0 +1,11 @@
+/**
+ * Migration of an existing database from IDENTITY columns to the pooled
+ * id_generator table. Each generator starts after the highest id in use so
+ * that the ids handed out from memory stay unique.
+ * The id columns must accept explicit values, drop their IDENTITY / GENERATED
+ * ALWAYS clause first if the database enforces it.
+ */
+CREATE TABLE id_generator (gen_name VARCHAR(50) NOT NULL, gen_value BIGINT, PRIMARY KEY (gen_name));
+INSERT INTO id_generator (gen_name, gen_value) SELECT 'account', COALESCE(MAX(id), 0) FROM account;
+INSERT INTO id_generator (gen_name, gen_value) SELECT 'continent', COALESCE(MAX(id), 0) FROM hcl.continent;
+INSERT INTO id_generator (gen_name, gen_value) SELECT 'country', COALESCE(MAX(id), 0) FROM hcl.country;
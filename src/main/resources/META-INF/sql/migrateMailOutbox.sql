@@ -0,0 +1,7 @@
+/**
+ * Creates the mail outbox of an existing database. Its ids are allocated from
+ * the id_generator table, see migrateIdGenerator.sql.
+ */
+CREATE TABLE mail_outbox (id BIGINT NOT NULL, user_id BIGINT NOT NULL, subject_template VARCHAR(100) NOT NULL, content_template VARCHAR(100) NOT NULL, attempts INTEGER NOT NULL, failed SMALLINT NOT NULL, next_attempt_date TIMESTAMP NOT NULL, created_date TIMESTAMP, last_error VARCHAR(255), PRIMARY KEY (id));
+CREATE INDEX idx_mail_outbox_due ON mail_outbox (failed, next_attempt_date);
+INSERT INTO id_generator (gen_name, gen_value) VALUES ('mail_outbox', 0);
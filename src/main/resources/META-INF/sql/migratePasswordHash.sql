@@ -0,0 +1,6 @@
+/**
+ * Widens the password_hash column of an existing database to hold the salted
+ * PBKDF2 hashes. The MD5 hashes already stored keep working and are replaced
+ * on the next successful login of each user.
+ */
+ALTER TABLE account ALTER COLUMN password_hash SET DATA TYPE VARCHAR(128);
@@ -0,0 +1,138 @@
+package com.apple.hcl4.controller.util;
+
+import com.apple.hcl4.config.AsyncConfig;
+import static com.apple.hcl4.metrics.InstrumentedFilter.TIMEOUTS_METRICS;
+import java.util.concurrent.RejectedExecutionException;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.enterprise.context.control.RequestContextController;
+import javax.enterprise.inject.Instance;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.Response;
+import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+import org.eclipse.microprofile.metrics.Meter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Timer;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.slf4j.Logger;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AsyncExecutorTest {
+
+    private static final String TIMER = "UserController.getUser";
+
+    @Mock
+    private Logger log;
+
+    @Mock
+    private ManagedExecutorService executor;
+
+    @Mock
+    private AsyncConfig asyncConfig;
+
+    @Mock
+    private MetricRegistry registry;
+
+    @Mock
+    private Instance<RequestContextController> requestContextControllers;
+
+    @InjectMocks
+    private AsyncExecutor asyncExecutor;
+
+    @Mock
+    private AsyncResponse asyncResponse;
+
+    @Mock
+    private Meter timeouts;
+
+    @Mock
+    private Timer timer;
+
+    @Mock
+    private Timer.Context timerContext;
+
+    @Before
+    public void setup() {
+        lenient().when(asyncConfig.isEnable()).thenReturn(true);
+        lenient().when(asyncConfig.getTimeoutInMillis()).thenReturn(100L);
+        lenient().when(registry.meter(TIMEOUTS_METRICS)).thenReturn(timeouts);
+        lenient().when(registry.timer(TIMER)).thenReturn(timer);
+        lenient().when(timer.time()).thenReturn(timerContext);
+        lenient().when(requestContextControllers.get()).thenReturn(mock(RequestContextController.class));
+    }
+
+    @Test
+    public void timedOutRequestAnswers503AndMarksTheTimeoutMeter() {
+        // the executor never runs the task
+        asyncExecutor.submit(asyncResponse, TIMER, () -> Response.ok().build());
+
+        verify(asyncResponse).setTimeout(100L, MILLISECONDS);
+        ArgumentCaptor<TimeoutHandler> timeoutHandler = ArgumentCaptor.forClass(TimeoutHandler.class);
+        verify(asyncResponse).setTimeoutHandler(timeoutHandler.capture());
+        timeoutHandler.getValue().handleTimeout(asyncResponse);
+
+        verify(timeouts).mark();
+        ArgumentCaptor<Response> response = ArgumentCaptor.forClass(Response.class);
+        verify(asyncResponse).resume(response.capture());
+        assertEquals(SERVICE_UNAVAILABLE.getStatusCode(), response.getValue().getStatus());
+    }
+
+    @Test
+    public void taskIsTimedAndResumesTheRequest() {
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(executor).execute(any());
+        Response ok = Response.ok().build();
+
+        asyncExecutor.submit(asyncResponse, TIMER, () -> ok);
+
+        verify(timerContext).stop();
+        verify(asyncResponse).resume(ok);
+        verify(timeouts, never()).mark();
+    }
+
+    @Test
+    public void failedTaskResumesTheRequestWithTheException() {
+        when(asyncConfig.isEnable()).thenReturn(false);
+        IllegalStateException failure = new IllegalStateException("database down");
+
+        asyncExecutor.submit(asyncResponse, TIMER, () -> {
+            throw failure;
+        });
+
+        verify(timerContext).stop();
+        ArgumentCaptor<Throwable> exception = ArgumentCaptor.forClass(Throwable.class);
+        verify(asyncResponse).resume(exception.capture());
+        assertSame(failure, exception.getValue());
+    }
+
+    @Test
+    public void rejectedTaskAnswers503() {
+        doThrow(new RejectedExecutionException()).when(executor).execute(any());
+
+        asyncExecutor.submit(asyncResponse, TIMER, () -> Response.ok().build());
+
+        ArgumentCaptor<Response> response = ArgumentCaptor.forClass(Response.class);
+        verify(asyncResponse).resume(response.capture());
+        assertEquals(SERVICE_UNAVAILABLE.getStatusCode(), response.getValue().getStatus());
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.apple.hcl4.controller.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.Base64;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+public class PaginationUtilTest {
+
+    private static final String BASE_URL = "/api/users";
+
+    @Test
+    public void cursorRoundTrips() {
+        String cursor = PaginationUtil.encodeCursor(9_007_199_254_740_993L);
+        assertFalse(cursor.contains("="));
+        assertEquals(Long.valueOf(9_007_199_254_740_993L), PaginationUtil.decodeCursor(cursor));
+    }
+
+    @Test
+    public void emptyCursorStartsFromTheFirstPage() {
+        assertNull(PaginationUtil.decodeCursor(null));
+        assertNull(PaginationUtil.decodeCursor(""));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void malformedCursorIsABadRequest() {
+        PaginationUtil.decodeCursor("not base64!");
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void nonNumericCursorIsABadRequest() {
+        PaginationUtil.decodeCursor(Base64.getUrlEncoder().encodeToString("login".getBytes(UTF_8)));
+    }
+
+    @Test
+    public void cursorHeadersLinkTheNextAndFirstPages() throws Exception {
+        String cursor = PaginationUtil.encodeCursor(42L);
+
+        Response response = PaginationUtil.generateCursorPaginationHttpHeaders(Response.ok(), cursor, 20, BASE_URL).build();
+
+        assertEquals("<" + BASE_URL + "?cursor=" + cursor + "&size=20>; rel=\"next\","
+                + "<" + BASE_URL + "?cursor=&size=20>; rel=\"first\"",
+                response.getHeaderString(HttpHeaders.LINK));
+    }
+
+    @Test
+    public void lastCursorPageOnlyLinksTheFirstPage() throws Exception {
+        Response response = PaginationUtil.generateCursorPaginationHttpHeaders(Response.ok(), null, 20, BASE_URL).build();
+
+        assertEquals("<" + BASE_URL + "?cursor=&size=20>; rel=\"first\"",
+                response.getHeaderString(HttpHeaders.LINK));
+    }
+
+}
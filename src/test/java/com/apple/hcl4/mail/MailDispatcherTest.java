@@ -0,0 +1,248 @@
+package com.apple.hcl4.mail;
+
+import com.apple.hcl4.config.MailConfig;
+import com.apple.hcl4.domain.MailOutbox;
+import com.apple.hcl4.domain.User;
+import com.apple.hcl4.repository.MailOutboxRepository;
+import com.apple.hcl4.repository.UserRepository;
+import java.time.Instant;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import java.util.List;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.mail.MessagingException;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Answers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.slf4j.Logger;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MailDispatcherTest {
+
+    private static final int BATCH_SIZE = 2;
+
+    private static final long RETRY_DELAY = 30;
+
+    private static final int RETRY_MAX = 3;
+
+    @Mock
+    private Logger log;
+
+    @Mock
+    private MailConfig mailConfig;
+
+    @Mock
+    private MailNotifier mailNotifier;
+
+    @Mock
+    private SmtpTransportPool transportPool;
+
+    @Mock
+    private MailRateLimiter rateLimiter;
+
+    @Mock
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private MetricRegistry registry;
+
+    @Mock
+    private ManagedScheduledExecutorService scheduler;
+
+    @Mock
+    private PooledTransport transport;
+
+    @InjectMocks
+    private MailDispatcher mailDispatcher;
+
+    @Before
+    public void setup() throws MessagingException {
+        lenient().when(mailConfig.isEnable()).thenReturn(true);
+        lenient().when(mailConfig.getOutboxInterval()).thenReturn(1000L);
+        lenient().when(mailConfig.getOutboxBatchSize()).thenReturn(BATCH_SIZE);
+        lenient().when(mailConfig.getOutboxClaim()).thenReturn(300L);
+        lenient().when(mailConfig.getOutboxRetryDelay()).thenReturn(RETRY_DELAY);
+        lenient().when(mailConfig.getOutboxRetryMax()).thenReturn(RETRY_MAX);
+        lenient().when(transportPool.borrow()).thenReturn(transport);
+        lenient().when(rateLimiter.tryAcquire(any())).thenReturn(MailRateLimiter.Decision.PERMITTED);
+        mailDispatcher.onStartup(null);
+    }
+
+    @Test
+    public void sentMailIsRemoved() throws Exception {
+        MailOutbox mail = mail(1, "user@example.com");
+        claim(singletonList(mail));
+
+        mailDispatcher.dispatch();
+
+        verify(mailNotifier).send(eq(transport), any(User.class), eq("subject"), eq("content"));
+        verify(mailOutboxRepository).remove(mail);
+        verify(transportPool).release(transport);
+    }
+
+    @Test
+    public void mailOfADeletedUserIsDropped() throws Exception {
+        MailOutbox mail = new MailOutbox(1L, "subject", "content");
+        claim(singletonList(mail));
+
+        mailDispatcher.dispatch();
+
+        verify(mailNotifier, never()).send(any(), any(), any(), any());
+        verify(mailOutboxRepository).remove(mail);
+    }
+
+    @Test
+    public void failedSendIsRetriedWithBackoff() throws Exception {
+        MailOutbox mail = mail(1, "user@example.com");
+        mail.setAttempts(1);
+        claim(singletonList(mail));
+        doThrow(new MessagingException("550 mailbox unavailable"))
+                .when(mailNotifier).send(any(), any(), any(), any());
+
+        Instant before = Instant.now();
+        mailDispatcher.dispatch();
+
+        assertEquals(2, mail.getAttempts());
+        assertEquals("550 mailbox unavailable", mail.getLastError());
+        assertFalse(mail.isFailed());
+        // the second attempt waits twice the retry delay
+        assertFalse(mail.getNextAttemptDate().isBefore(before.plusSeconds(2 * RETRY_DELAY)));
+        verify(mailOutboxRepository).edit(mail);
+        verify(mailOutboxRepository, never()).remove(mail);
+    }
+
+    @Test
+    public void lastFailedAttemptMarksTheMailAsFailed() throws Exception {
+        MailOutbox mail = mail(1, "user@example.com");
+        mail.setAttempts(RETRY_MAX - 1);
+        claim(singletonList(mail));
+        doThrow(new MessagingException("550 mailbox unavailable"))
+                .when(mailNotifier).send(any(), any(), any(), any());
+
+        mailDispatcher.dispatch();
+
+        assertEquals(RETRY_MAX, mail.getAttempts());
+        assertTrue(mail.isFailed());
+        verify(mailOutboxRepository).edit(mail);
+    }
+
+    @Test
+    public void connectionFailureIsAnAttempt() throws Exception {
+        MailOutbox mail = mail(1, "user@example.com");
+        claim(singletonList(mail));
+        when(transportPool.borrow()).thenThrow(new MessagingException("Connection refused"));
+
+        mailDispatcher.dispatch();
+
+        assertEquals(1, mail.getAttempts());
+        assertEquals("Connection refused", mail.getLastError());
+        verify(mailOutboxRepository).edit(mail);
+    }
+
+    @Test
+    public void poolExhaustionIsNotAnAttemptAndEndsTheRun() throws Exception {
+        MailOutbox first = mail(1, "first@example.com");
+        MailOutbox second = mail(2, "second@example.com");
+        claim(asList(first, second));
+        when(transportPool.borrow()).thenThrow(new SmtpTransportPool.PoolExhaustedException("No SMTP connection available", null));
+
+        Instant after = Instant.now();
+        mailDispatcher.dispatch();
+
+        assertEquals(0, first.getAttempts());
+        assertEquals(0, second.getAttempts());
+        assertFalse(first.getNextAttemptDate().isAfter(Instant.now()));
+        assertFalse(first.getNextAttemptDate().isBefore(after));
+        verify(mailOutboxRepository).edit(first);
+        verify(mailOutboxRepository).edit(second);
+        verify(mailOutboxRepository, times(1)).claimDue(any(), any(), anyInt());
+    }
+
+    @Test
+    public void domainDeferralSkipsTheDomainAndKeepsClaiming() throws Exception {
+        MailOutbox first = mail(1, "first@slow.example.com");
+        MailOutbox second = mail(2, "second@slow.example.com");
+        MailOutbox third = mail(3, "third@example.com");
+        when(mailOutboxRepository.claimDue(any(), any(), eq(BATCH_SIZE)))
+                .thenReturn(asList(first, second), singletonList(third));
+        when(rateLimiter.tryAcquire("first@slow.example.com")).thenReturn(new MailRateLimiter.Decision(5000, false));
+
+        Instant before = Instant.now();
+        mailDispatcher.dispatch();
+
+        // the second e-mail is deferred with the first one, without asking the limiter
+        verify(rateLimiter, never()).tryAcquire("second@slow.example.com");
+        assertEquals(0, first.getAttempts());
+        assertEquals(first.getNextAttemptDate(), second.getNextAttemptDate());
+        assertFalse(first.getNextAttemptDate().isBefore(before.plusMillis(5000)));
+        verify(mailOutboxRepository).edit(first);
+        verify(mailOutboxRepository).edit(second);
+        verify(mailOutboxRepository).remove(third);
+        verify(mailOutboxRepository, times(2)).claimDue(any(), any(), anyInt());
+    }
+
+    @Test
+    public void globalDeferralEndsTheRun() throws Exception {
+        MailOutbox first = mail(1, "first@example.com");
+        MailOutbox second = mail(2, "second@example.org");
+        claim(asList(first, second));
+        when(rateLimiter.tryAcquire("first@example.com")).thenReturn(new MailRateLimiter.Decision(1000, true));
+
+        mailDispatcher.dispatch();
+
+        // once the global limit is reached no other e-mail is tried
+        verify(rateLimiter, never()).tryAcquire("second@example.org");
+        verify(mailNotifier, never()).send(any(), any(), any(), any());
+        assertEquals(0, first.getAttempts());
+        assertEquals(first.getNextAttemptDate(), second.getNextAttemptDate());
+        verify(mailOutboxRepository, times(1)).claimDue(any(), any(), anyInt());
+    }
+
+    @Test
+    public void queueDepthIsUpdatedAfterEachRun() {
+        when(mailOutboxRepository.claimDue(any(), any(), anyInt())).thenReturn(emptyList());
+
+        mailDispatcher.dispatch();
+
+        verify(mailOutboxRepository).countPending();
+    }
+
+    /**
+     * Claims the e-mails then an empty batch.
+     */
+    private void claim(List<MailOutbox> batch) {
+        when(mailOutboxRepository.claimDue(any(), any(), eq(BATCH_SIZE))).thenReturn(batch, emptyList());
+    }
+
+    private MailOutbox mail(long userId, String email) {
+        User user = new User();
+        user.setId(userId);
+        user.setEmail(email);
+        lenient().when(userRepository.find(userId)).thenReturn(user);
+        MailOutbox mail = new MailOutbox(userId, "subject", "content");
+        mail.setId(userId);
+        return mail;
+    }
+
+}
@@ -0,0 +1,196 @@
+package com.apple.hcl4.mail;
+
+import com.apple.hcl4.config.MailConfig;
+import com.apple.hcl4.domain.MailOutbox;
+import com.apple.hcl4.domain.User;
+import com.apple.hcl4.producer.TemplateEngineProducer;
+import com.apple.hcl4.repository.MailOutboxRepository;
+import com.apple.hcl4.repository.UserRepository;
+import com.icegreen.greenmail.junit.GreenMailRule;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import java.lang.reflect.Field;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import java.util.Optional;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.context.control.RequestContextController;
+import javax.enterprise.inject.Instance;
+import javax.mail.internet.MimeMessage;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends the mail outbox through the pool, the notifier and the templates to
+ * an embedded SMTP server, only the repositories are mocked.
+ */
+public class MailOutboxSmtpTest {
+
+    private static final String FROM = "noreply@example.com";
+
+    private static final String BASE_URL = "http://127.0.0.1:8080/hcl4";
+
+    @Rule
+    public final GreenMailRule greenMail = new GreenMailRule(ServerSetupTest.SMTP);
+
+    private MailConfig mailConfig;
+
+    private MailOutboxRepository mailOutboxRepository;
+
+    private UserRepository userRepository;
+
+    private SmtpTransportPool transportPool;
+
+    private MailDispatcher mailDispatcher;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        mailConfig = mock(MailConfig.class);
+        when(mailConfig.isEnable()).thenReturn(true);
+        when(mailConfig.getHost()).thenReturn(ServerSetupTest.SMTP.getBindAddress());
+        when(mailConfig.getPort()).thenReturn(ServerSetupTest.SMTP.getPort());
+        when(mailConfig.getFrom()).thenReturn(FROM);
+        when(mailConfig.getBaseUrl()).thenReturn(BASE_URL);
+        when(mailConfig.getPoolSize()).thenReturn(2);
+        when(mailConfig.getPoolMaxMessages()).thenReturn(100);
+        when(mailConfig.getPoolIdleTimeout()).thenReturn(60L);
+        when(mailConfig.getPoolTimeout()).thenReturn(1000L);
+        when(mailConfig.getOutboxInterval()).thenReturn(1000L);
+        when(mailConfig.getOutboxBatchSize()).thenReturn(10);
+        when(mailConfig.getOutboxClaim()).thenReturn(300L);
+        when(mailConfig.getOutboxRetryDelay()).thenReturn(30L);
+        when(mailConfig.getOutboxRetryMax()).thenReturn(8);
+        MetricRegistry registry = mock(MetricRegistry.class, RETURNS_DEEP_STUBS);
+        ManagedScheduledExecutorService scheduler = mock(ManagedScheduledExecutorService.class);
+        MailRateLimiter rateLimiter = mock(MailRateLimiter.class);
+        when(rateLimiter.tryAcquire(any())).thenReturn(MailRateLimiter.Decision.PERMITTED);
+        mailOutboxRepository = mock(MailOutboxRepository.class);
+        userRepository = mock(UserRepository.class);
+
+        transportPool = new SmtpTransportPool();
+        inject(transportPool, "log", LoggerFactory.getLogger(SmtpTransportPool.class));
+        inject(transportPool, "mailConfig", mailConfig);
+        inject(transportPool, "registry", registry);
+        inject(transportPool, "scheduler", scheduler);
+        transportPool.init();
+
+        MailTemplateRenderer renderer = new MailTemplateRenderer();
+        inject(renderer, "engine", new TemplateEngineProducer().getTemplateEngine());
+        inject(renderer, "mailConfig", mailConfig);
+
+        MailNotifier mailNotifier = new MailNotifier();
+        inject(mailNotifier, "log", LoggerFactory.getLogger(MailNotifier.class));
+        inject(mailNotifier, "renderer", renderer);
+        inject(mailNotifier, "mailConfig", mailConfig);
+        inject(mailNotifier, "transportPool", transportPool);
+
+        mailDispatcher = new MailDispatcher();
+        inject(mailDispatcher, "log", LoggerFactory.getLogger(MailDispatcher.class));
+        inject(mailDispatcher, "mailConfig", mailConfig);
+        inject(mailDispatcher, "mailNotifier", mailNotifier);
+        inject(mailDispatcher, "transportPool", transportPool);
+        inject(mailDispatcher, "rateLimiter", rateLimiter);
+        inject(mailDispatcher, "mailOutboxRepository", mailOutboxRepository);
+        inject(mailDispatcher, "userRepository", userRepository);
+        inject(mailDispatcher, "registry", registry);
+        inject(mailDispatcher, "scheduler", scheduler);
+        Instance<RequestContextController> requestContextControllers = mock(Instance.class);
+        when(requestContextControllers.get()).thenReturn(mock(RequestContextController.class));
+        inject(mailDispatcher, "requestContextControllers", requestContextControllers);
+        mailDispatcher.onStartup(null);
+    }
+
+    @After
+    public void destroy() {
+        transportPool.destroy();
+    }
+
+    @Test
+    public void dispatchSendsTheRenderedMails() throws Exception {
+        MailOutbox first = mail(user(1));
+        MailOutbox second = mail(user(2));
+        when(mailOutboxRepository.claimDue(any(), any(), anyInt())).thenReturn(asList(first, second), emptyList());
+
+        mailDispatcher.dispatch();
+
+        assertTrue(greenMail.waitForIncomingEmail(5000, 2));
+        MimeMessage[] messages = greenMail.getReceivedMessages();
+        assertEquals(2, messages.length);
+        assertEquals("user1@example.com", messages[0].getAllRecipients()[0].toString());
+        assertEquals("user2@example.com", messages[1].getAllRecipients()[0].toString());
+        assertEquals(FROM, messages[0].getFrom()[0].toString());
+        assertEquals("SampleApplication account creation", messages[0].getSubject());
+        String body = GreenMailUtil.getBody(messages[0]);
+        assertTrue(body.contains("user1"));
+        assertTrue(body.contains(BASE_URL + "/#/reset/finish?key=reset1"));
+        verify(mailOutboxRepository).remove(first);
+        verify(mailOutboxRepository).remove(second);
+    }
+
+    @Test
+    public void queuedMailIsSentAtOnce() throws Exception {
+        MailOutbox mail = mail(user(1));
+        mail.setId(10L);
+        when(mailOutboxRepository.claim(any(), any(), any())).thenReturn(Optional.of(mail));
+
+        mailDispatcher.onMailQueued(new MailEvent(10L));
+
+        assertTrue(greenMail.waitForIncomingEmail(5000, 1));
+        verify(mailOutboxRepository).remove(mail);
+    }
+
+    @Test
+    public void unreachableRelayIsRetried() throws Exception {
+        MailOutbox mail = mail(user(1));
+        when(mailOutboxRepository.claimDue(any(), any(), anyInt())).thenReturn(asList(mail), emptyList());
+        greenMail.stop();
+
+        mailDispatcher.dispatch();
+
+        assertEquals(1, mail.getAttempts());
+        assertFalse(mail.isFailed());
+        verify(mailOutboxRepository).edit(mail);
+        verify(mailOutboxRepository, never()).remove(mail);
+    }
+
+    private User user(long id) {
+        User user = new User();
+        user.setId(id);
+        user.setLogin("user" + id);
+        user.setEmail("user" + id + "@example.com");
+        user.setLangKey("en");
+        user.setResetKey("reset" + id);
+        when(userRepository.find(id)).thenReturn(user);
+        return user;
+    }
+
+    private MailOutbox mail(User user) {
+        return new MailOutbox(user.getId(), "email.creation.title", "creationEmail");
+    }
+
+    private static void inject(Object bean, String fieldName, Object value) {
+        try {
+            Field field = bean.getClass().getDeclaredField(fieldName);
+            field.setAccessible(true);
+            field.set(bean, value);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.apple.hcl4.mail;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class TokenBucketTest {
+
+    private static final long START = 1_000_000_000L;
+
+    @Test
+    public void tryAcquireAllowsTheBurstThenWaitsForTheRate() {
+        TokenBucket bucket = new TokenBucket(2, 3, START);
+        assertEquals(0, bucket.tryAcquire(START));
+        assertEquals(0, bucket.tryAcquire(START));
+        assertEquals(0, bucket.tryAcquire(START));
+        assertEquals(MILLISECONDS.toNanos(500), bucket.tryAcquire(START));
+    }
+
+    @Test
+    public void tryAcquireReturnsTheTimeUntilTheNextToken() {
+        TokenBucket bucket = new TokenBucket(2, 1, START);
+        assertEquals(0, bucket.tryAcquire(START));
+        assertEquals(MILLISECONDS.toNanos(400), bucket.tryAcquire(START + MILLISECONDS.toNanos(100)));
+        assertEquals(0, bucket.tryAcquire(START + MILLISECONDS.toNanos(500)));
+    }
+
+    @Test
+    public void deferralDoesNotTakeAToken() {
+        TokenBucket bucket = new TokenBucket(1, 1, START);
+        assertEquals(0, bucket.tryAcquire(START));
+        bucket.tryAcquire(START);
+        bucket.tryAcquire(START);
+        assertEquals(0, bucket.tryAcquire(START + SECONDS.toNanos(1)));
+    }
+
+    @Test
+    public void refillIsCappedAtTheBurst() {
+        TokenBucket bucket = new TokenBucket(10, 2, START);
+        long later = START + SECONDS.toNanos(60);
+        assertEquals(0, bucket.tryAcquire(later));
+        assertEquals(0, bucket.tryAcquire(later));
+        assertEquals(MILLISECONDS.toNanos(100), bucket.tryAcquire(later));
+    }
+
+    @Test
+    public void burstIsAtLeastOneToken() {
+        TokenBucket bucket = new TokenBucket(1, 0, START);
+        assertEquals(0, bucket.tryAcquire(START));
+        assertEquals(SECONDS.toNanos(1), bucket.tryAcquire(START));
+    }
+
+    @Test
+    public void refundGivesBackATakenToken() {
+        TokenBucket bucket = new TokenBucket(1, 1, START);
+        assertEquals(0, bucket.tryAcquire(START));
+        bucket.refund();
+        assertEquals(0, bucket.tryAcquire(START));
+    }
+
+    @Test
+    public void refundIsCappedAtTheBurst() {
+        TokenBucket bucket = new TokenBucket(1, 1, START);
+        bucket.refund();
+        assertEquals(0, bucket.tryAcquire(START));
+        assertEquals(SECONDS.toNanos(1), bucket.tryAcquire(START));
+    }
+
+}
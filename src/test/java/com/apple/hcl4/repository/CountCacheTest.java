@@ -0,0 +1,138 @@
+package com.apple.hcl4.repository;
+
+import com.apple.hcl4.config.PersistenceConfig;
+import com.apple.hcl4.domain.Country;
+import com.apple.hcl4.domain.User;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CountCacheTest {
+
+    @Mock
+    private PersistenceConfig persistenceConfig;
+
+    /**
+     * Without a transaction registry the actions run at once.
+     */
+    @Spy
+    private TransactionSupport transactionSupport;
+
+    @InjectMocks
+    private CountCache countCache;
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Before
+    public void setup() {
+        lenient().when(persistenceConfig.getCountTtlInSeconds()).thenReturn(-1L);
+    }
+
+    @Test
+    public void getLoadsOnceThenServesTheCachedCount() {
+        assertEquals(10, countCache.get(User.class, () -> load(10)));
+        assertEquals(10, countCache.get(User.class, () -> load(20)));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void getAlwaysLoadsWhenDisabled() {
+        when(persistenceConfig.getCountTtlInSeconds()).thenReturn(0L);
+        assertEquals(10, countCache.get(User.class, () -> load(10)));
+        assertEquals(20, countCache.get(User.class, () -> load(20)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void getReloadsExpiredCounts() throws InterruptedException {
+        when(persistenceConfig.getCountTtlInSeconds()).thenReturn(1L);
+        countCache.get(User.class, () -> load(10));
+        Thread.sleep(1100);
+        assertEquals(20, countCache.get(User.class, () -> load(20)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void adjustUpdatesTheCachedCount() {
+        countCache.get(User.class, () -> load(10));
+        countCache.adjust(User.class, 5);
+        countCache.adjust(User.class, -2);
+        assertEquals(13, countCache.get(User.class, () -> load(0)));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void adjustNeverGoesBelowZero() {
+        countCache.get(User.class, () -> load(1));
+        countCache.adjust(User.class, -3);
+        assertEquals(0, countCache.get(User.class, () -> load(10)));
+    }
+
+    @Test
+    public void adjustIsPerEntityClass() {
+        countCache.get(User.class, () -> load(10));
+        countCache.get(Country.class, () -> load(100));
+        countCache.adjust(Country.class, 1);
+        assertEquals(10, countCache.get(User.class, () -> load(0)));
+        assertEquals(101, countCache.get(Country.class, () -> load(0)));
+    }
+
+    @Test
+    public void invalidateForcesAReload() {
+        countCache.get(User.class, () -> load(10));
+        countCache.invalidate(User.class);
+        assertEquals(20, countCache.get(User.class, () -> load(20)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void countLoadedDuringAnAdjustmentIsNotCached() {
+        // the load reads 10 rows, a creation commits before it returns
+        assertEquals(10, countCache.get(User.class, () -> {
+            countCache.adjust(User.class, 1);
+            return load(10);
+        }));
+        assertEquals(11, countCache.get(User.class, () -> load(11)));
+        assertEquals(11, countCache.get(User.class, () -> load(0)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void countLoadedDuringAnInvalidationIsNotCached() {
+        assertEquals(10, countCache.get(User.class, () -> {
+            countCache.invalidate(User.class);
+            return load(10);
+        }));
+        assertEquals(12, countCache.get(User.class, () -> load(12)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void adjustDuringAReloadKeepsTheAdjustedEntry() throws InterruptedException {
+        when(persistenceConfig.getCountTtlInSeconds()).thenReturn(1L);
+        countCache.get(User.class, () -> load(10));
+        Thread.sleep(1100);
+        assertEquals(10, countCache.get(User.class, () -> {
+            countCache.adjust(User.class, 1);
+            return load(10);
+        }));
+        // the expired entry is kept, so the next read reloads
+        assertEquals(11, countCache.get(User.class, () -> load(11)));
+        assertEquals(3, loads.get());
+    }
+
+    private int load(int count) {
+        loads.incrementAndGet();
+        return count;
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.apple.hcl4.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class JwtAlgorithmTest {
+
+    private static final byte[] PAYLOAD = "header.payload".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    public void es256SignaturesRoundTrip() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = generator.generateKeyPair();
+        // half of the parts need a sign byte, some are shorter than 32 bytes
+        for (int i = 0; i < 50; i++) {
+            Signature signer = JwtAlgorithm.ES256.newSignature();
+            signer.initSign(keyPair.getPrivate());
+            signer.update(PAYLOAD);
+            byte[] der = signer.sign();
+
+            byte[] jws = JwtAlgorithm.ES256.toJws(der);
+            assertEquals(64, jws.length);
+
+            Signature verifier = JwtAlgorithm.ES256.newSignature();
+            verifier.initVerify(keyPair.getPublic());
+            verifier.update(PAYLOAD);
+            assertTrue(verifier.verify(JwtAlgorithm.ES256.toJca(jws)));
+            assertArrayEquals(jws, JwtAlgorithm.ES256.toJws(JwtAlgorithm.ES256.toJca(jws)));
+        }
+    }
+
+    @Test
+    public void toJcaAddsTheSignByteAndStripsTheLeadingZeros() throws Exception {
+        byte[] jws = new byte[64];
+        Arrays.fill(jws, 0, 32, (byte) 0x80);
+        jws[63] = 0x01;
+
+        byte[] der = JwtAlgorithm.ES256.toJca(jws);
+
+        byte[] expected = new byte[2 + 2 + 33 + 2 + 1];
+        expected[0] = 0x30;
+        expected[1] = 38;
+        expected[2] = 0x02;
+        expected[3] = 33;
+        Arrays.fill(expected, 5, 37, (byte) 0x80);
+        expected[37] = 0x02;
+        expected[38] = 1;
+        expected[39] = 0x01;
+        assertArrayEquals(expected, der);
+        assertArrayEquals(jws, JwtAlgorithm.ES256.toJws(der));
+    }
+
+    @Test(expected = SignatureException.class)
+    public void toJcaRejectsAnInvalidLength() throws Exception {
+        JwtAlgorithm.ES256.toJca(new byte[63]);
+    }
+
+    @Test(expected = SignatureException.class)
+    public void toJwsRejectsAnInvalidSignature() throws Exception {
+        JwtAlgorithm.ES256.toJws(new byte[]{0x30, 6, 0x04, 1, 0x01, 0x02, 1, 0x01});
+    }
+
+    @Test
+    public void rs256SignaturesAreNotTranscoded() throws Exception {
+        byte[] signature = {0x30, 0x01, 0x02};
+        assertSame(signature, JwtAlgorithm.RS256.toJws(signature));
+        assertSame(signature, JwtAlgorithm.RS256.toJca(signature));
+    }
+
+    @Test
+    public void ofResolvesTheHeaderName() {
+        assertSame(JwtAlgorithm.ES256, JwtAlgorithm.of("ES256"));
+        assertNull(JwtAlgorithm.of("HS256"));
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.apple.hcl4.service;
+
+import com.apple.hcl4.domain.User;
+import com.apple.hcl4.repository.UserRepository;
+import com.apple.hcl4.security.PasswordEncoder;
+import com.apple.hcl4.security.SecurityHelper;
+import com.apple.hcl4.service.dto.LoginDTO;
+import com.apple.hcl4.service.dto.UserDTO;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import javax.security.enterprise.AuthenticationException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.slf4j.Logger;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UserServiceTest {
+
+    @Mock
+    private Logger log;
+
+    @Mock
+    private SecurityHelper securityHelper;
+
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private AuthorityRegistry authorityRegistry;
+
+    @Mock
+    private CurrentUserContext currentUserContext;
+
+    @Mock
+    private MailService mailService;
+
+    @InjectMocks
+    private UserService userService;
+
+    @Test
+    public void createUsersDoesNotHashAPasswordPerUser() {
+        List<UserDTO> userDTOs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            UserDTO userDTO = new UserDTO();
+            userDTO.setLogin("user" + i);
+            userDTO.setEmail("user" + i + "@example.com");
+            userDTOs.add(userDTO);
+        }
+
+        List<User> users = userService.createUsers(userDTOs);
+
+        verify(passwordEncoder, never()).encode(any());
+        verify(userRepository).createAll(users);
+        verify(mailService).sendCreationEmails(users);
+        for (User user : users) {
+            assertEquals(PasswordEncoder.UNUSABLE_PASSWORD, user.getPassword());
+            assertNotNull(user.getResetKey());
+        }
+    }
+
+    @Test(expected = AuthenticationException.class)
+    public void unknownLoginIsCheckedAgainstTheDummyHash() throws Exception {
+        when(userRepository.findOneWithAuthoritiesByLogin("unknown")).thenReturn(Optional.empty());
+        try {
+            userService.authenticate(login("unknown"));
+        } finally {
+            verify(passwordEncoder).matches("secret", null);
+        }
+    }
+
+    @Test(expected = AuthenticationException.class)
+    public void deactivatedLoginIsCheckedAgainstTheDummyHash() throws Exception {
+        User user = new User();
+        user.setLogin("user");
+        user.setActivated(false);
+        user.setPassword("$pbkdf2-sha256$1$c2FsdA$aGFzaA");
+        when(userRepository.findOneWithAuthoritiesByLogin("user")).thenReturn(Optional.of(user));
+        try {
+            userService.authenticate(login("user"));
+        } finally {
+            verify(passwordEncoder).matches("secret", null);
+        }
+    }
+
+    private static LoginDTO login(String username) {
+        LoginDTO loginDTO = new LoginDTO();
+        loginDTO.setUsername(username);
+        loginDTO.setPassword("secret");
+        return loginDTO;
+    }
+
+}